@@ -29,6 +29,16 @@ public class Configuration implements Unit {
         return urlMap;
     }
 
+    @Override
+    public int getDepth() {
+        return track.getDepth();
+    }
+
+    @Override
+    public long getUnitCount() {
+        return track.getUnitCount();
+    }
+
     @Override
     public void accept(Visitor visitor) {
         visitor.visitConfiguration(this);
@@ -38,4 +48,21 @@ public class Configuration implements Unit {
     public Configuration getConfiguration() {
         return this;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Configuration)) {
+            return false;
+        }
+        Configuration other = (Configuration) o;
+        return track.equals(other.track) && urlMap.equals(other.urlMap);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * track.hashCode() + urlMap.hashCode();
+    }
 }
@@ -6,6 +6,7 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.atpfivt.jsyntrax.styles.TextMetrics;
 
 import java.io.PrintWriter;
 import java.nio.file.Path;
@@ -26,6 +27,14 @@ public class InputArguments {
     private String version;
     private boolean transparent;
     private double scale = 1.0;
+    private TextMetrics metrics = TextMetrics.awt;
+    private boolean compact;
+    private boolean symbols;
+    private boolean viewBox;
+    private boolean shadowFilter;
+    private boolean java2d;
+    private Path cacheDir;
+    private boolean json;
     private boolean getDefaultStyle = false;
 
     static {
@@ -45,6 +54,22 @@ public class InputArguments {
                 (o, s) -> o.transparent = true);
         OPTIONS_MAP.put(new Option(null, "scale", true, "Scale image"),
                 (o, s) -> o.scale = Double.parseDouble(s));
+        OPTIONS_MAP.put(new Option(null, "compact", false, "Compact SVG with CSS classes and merged lines"),
+                (o, s) -> o.compact = true);
+        OPTIONS_MAP.put(new Option(null, "symbols", false, "Draw repeated nodes once and reuse them"),
+                (o, s) -> o.symbols = true);
+        OPTIONS_MAP.put(new Option(null, "viewbox", false, "Scale with viewBox instead of scaling coordinates"),
+                (o, s) -> o.viewBox = true);
+        OPTIONS_MAP.put(new Option(null, "shadow-filter", false, "Draw shadows with an SVG filter"),
+                (o, s) -> o.shadowFilter = true);
+        OPTIONS_MAP.put(new Option(null, "java2d", false, "Draw PNG images with Java2D instead of Batik"),
+                (o, s) -> o.java2d = true);
+        OPTIONS_MAP.put(new Option(null, "cache-dir", true, "Directory to keep parsed specs in between runs"),
+                (o, s) -> o.cacheDir = Paths.get(s));
+        OPTIONS_MAP.put(new Option(null, "json", false, "Read the spec as JSON, the default for .json files"),
+                (o, s) -> o.json = true);
+        OPTIONS_MAP.put(new Option(null, "metrics", true, "Text metrics: awt (installed fonts) or table (bundled)"),
+                (o, s) -> o.metrics = TextMetrics.valueOf(s));
         OPTIONS_MAP.put(new Option("v", "version", false, "Release version"),
                 (o, s) -> {
                     o.version = "JSyntrax " + Main.class
@@ -126,6 +151,41 @@ public class InputArguments {
         return scale;
     }
 
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public boolean isSymbols() {
+        return symbols;
+    }
+
+    public boolean isViewBox() {
+        return viewBox;
+    }
+
+    public boolean isShadowFilter() {
+        return shadowFilter;
+    }
+
+    public boolean isJava2d() {
+        return java2d;
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * @return true if the spec is JSON, by the option or by the extension of the input
+     */
+    public boolean isJson() {
+        return json || input != null && input.toString().toLowerCase().endsWith(".json");
+    }
+
+    public TextMetrics getMetrics() {
+        return metrics;
+    }
+
     public String getVersion() {
         return version;
     }
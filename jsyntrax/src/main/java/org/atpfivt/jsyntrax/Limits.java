@@ -0,0 +1,98 @@
+package org.atpfivt.jsyntrax;
+
+import org.atpfivt.jsyntrax.exceptions.LimitExceededException;
+import org.atpfivt.jsyntrax.units.Unit;
+
+import java.time.Duration;
+
+/**
+ * @brief limits of time, units and depth of a diagram, for rendering specs that can't be trusted
+ * @details Parsing and layout each have the whole timeout. Units are counted as laid out,
+ * so a unit repeated in a spec counts every time. Limits are immutable, NONE limits nothing.
+ */
+public final class Limits {
+    public static final Limits NONE = new Limits(null, Long.MAX_VALUE, Integer.MAX_VALUE);
+    // deadline of work without timeout
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final Duration timeout;
+    private final long maxUnits;
+    private final int maxDepth;
+
+    private Limits(Duration timeout, long maxUnits, int maxDepth) {
+        this.timeout = timeout;
+        this.maxUnits = maxUnits;
+        this.maxDepth = maxDepth;
+    }
+
+    public Limits withTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+        }
+        return new Limits(timeout, maxUnits, maxDepth);
+    }
+
+    public Limits withMaxUnits(long maxUnits) {
+        if (maxUnits < 1) {
+            throw new IllegalArgumentException("Maximum of units must be positive: " + maxUnits);
+        }
+        return new Limits(timeout, maxUnits, maxDepth);
+    }
+
+    public Limits withMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Maximum depth must be positive: " + maxDepth);
+        }
+        return new Limits(timeout, maxUnits, maxDepth);
+    }
+
+    /**
+     * @return the timeout or null if there is none
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public long getMaxUnits() {
+        return maxUnits;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return System.nanoTime() by which work started now has to finish, or NO_DEADLINE
+     */
+    public long getDeadline() {
+        return timeout == null ? NO_DEADLINE : System.nanoTime() + timeout.toNanos();
+    }
+
+    /**
+     * @throws LimitExceededException the deadline has passed
+     */
+    public void checkTime(long deadline) {
+        if (deadline != NO_DEADLINE && System.nanoTime() - deadline > 0) {
+            throw new LimitExceededException(LimitExceededException.Limit.time, timeout.toMillis());
+        }
+    }
+
+    /**
+     * @throws LimitExceededException the unit has too many units or is nested too deep
+     */
+    public void checkUnit(Unit unit) {
+        checkUnitCount(unit.getUnitCount());
+        if (unit.getDepth() > maxDepth) {
+            throw new LimitExceededException(LimitExceededException.Limit.depth, maxDepth);
+        }
+    }
+
+    /**
+     * @throws LimitExceededException the count is over the maximum of units
+     */
+    public void checkUnitCount(long count) {
+        if (count > maxUnits) {
+            throw new LimitExceededException(LimitExceededException.Limit.units, maxUnits);
+        }
+    }
+}
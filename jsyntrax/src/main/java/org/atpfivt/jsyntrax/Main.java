@@ -2,20 +2,27 @@ package org.atpfivt.jsyntrax;
 
 
 import org.apache.batik.transcoder.TranscoderException;
+import org.atpfivt.jsyntrax.generators.Java2DRenderer;
 import org.atpfivt.jsyntrax.generators.SVGCanvas;
+import org.atpfivt.jsyntrax.exceptions.JsonSpecException;
 import org.atpfivt.jsyntrax.generators.SVGCanvasBuilder;
 import org.atpfivt.jsyntrax.groovy_parser.Parser;
+import org.atpfivt.jsyntrax.parser.JsonSpecParser;
+import org.atpfivt.jsyntrax.parser.SpecParser;
 import org.atpfivt.jsyntrax.styles.StyleConfig;
-import org.atpfivt.jsyntrax.units.Unit;
 import org.atpfivt.jsyntrax.util.SVGTranscoder;
 import org.codehaus.groovy.control.CompilationFailedException;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.stream.Collectors;
 
 public final class Main {
@@ -81,31 +88,59 @@ public final class Main {
             return;
         }
 
-        // read script
-        String scriptText;
+        SVGCanvas canvas;
+        if (iArgs.isJson()) {
+            // JSON is parsed as it is read
+            try (Reader json = Files.newBufferedReader(iArgs.getInput())) {
+                canvas = generateCanvasFromJson(iArgs.getTitle(), style, json);
+            } catch (IOException e) {
+                System.out.println("Failed to read: " + e.getMessage());
+                return;
+            }
+        } else {
+            // read script
+            String scriptText;
+            try {
+                scriptText = new String(Files.readAllBytes(iArgs.getInput()));
+            } catch (IOException e) {
+                System.out.println("Failed to read: " + e.getMessage());
+                return;
+            }
+
+            SpecCache cache = iArgs.getCacheDir() == null ? null : new SpecCache(iArgs.getCacheDir());
+            canvas = generateCanvas(iArgs.getTitle(), style, scriptText, cache);
+        }
+        if (canvas == null) return;
+
+        // write result to a file next to the output, the output is replaced only by a complete result
+        Path output = iArgs.getOutput();
+        Path temp;
         try {
-            scriptText = new String(Files.readAllBytes(iArgs.getInput()));
+            temp = createTempOutput(output);
         } catch (IOException e) {
-            System.out.println("Failed to read: " + e.getMessage());
+            System.out.println("Failed to write: " + e.getMessage());
             return;
         }
-
-        String result = generateSVG(iArgs.getTitle(), style, scriptText);
-        if (result == null) return;
-
-        // write result to file
         try {
-            Path output = iArgs.getOutput();
-            if (output.toString().toLowerCase().endsWith(".png")) {
-                Files.write(output, SVGTranscoder.svg2Png(result));
-            } else {
-                Files.writeString(output, result);
+            boolean written = true;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                if (!output.toString().toLowerCase().endsWith(".png")) {
+                    canvas.generateSVG(out);
+                } else if (iArgs.isJava2d()) {
+                    new Java2DRenderer(canvas).generatePNG(out);
+                } else {
+                    written = BatikOutput.writePNG(canvas, out);
+                }
             }
+            if (!written) {
+                return;
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             System.out.println("Failed to write: " + e.getMessage());
             return;
-        } catch (TranscoderException e) {
-            System.out.println("Failed to transcode .svg image: " + e.getMessage());
+        } finally {
+            Files.deleteIfExists(temp);
         }
         System.out.println("Done!");
     }
@@ -116,16 +151,23 @@ public final class Main {
      * @throws IOException style file is inaccessible or invalid
      */
     public static StyleConfig getStyleConfig(InputArguments args) throws IOException {
+        StyleConfig style;
         if (args.getStyle() != null) {
-                return new StyleConfig(
+                style = new StyleConfig(
                         args.getScale(),
                         args.isTransparent(),
                         args.getStyle());
         } else {
-            return new StyleConfig(
+            style = new StyleConfig(
                     args.getScale(),
                     args.isTransparent());
         }
+        style.setTextMetrics(args.getMetrics());
+        style.setCompact(args.isCompact());
+        style.setSymbols(args.isSymbols());
+        style.setViewBoxScale(args.isViewBox());
+        style.setShadowFilter(args.isShadowFilter());
+        return style;
     }
 
     /**
@@ -136,26 +178,167 @@ public final class Main {
      *
      */
     public static String generateSVG(String title, StyleConfig style, String scriptText) throws IOException {
+        return generateSVG(title, style, scriptText, null);
+    }
+
+    /**
+     * Generates SVG for the diagram, the spec is parsed only if it is not in the cache.
+     * @param cache Parsed specs of earlier runs, or null
+     */
+    public static String generateSVG(String title, StyleConfig style, String scriptText, SpecCache cache)
+            throws IOException {
+        return generateSVG(title, style, scriptText, cache, Limits.NONE);
+    }
+
+    /**
+     * Generates SVG for the diagram of a spec that can't be trusted.
+     * @param cache Parsed specs of earlier runs, or null
+     * @param limits Limits of the time, units and depth of the diagram
+     * @throws org.atpfivt.jsyntrax.exceptions.LimitExceededException the diagram is out of the limits
+     */
+    public static String generateSVG(String title, StyleConfig style, String scriptText, SpecCache cache,
+                                     Limits limits) throws IOException {
+        SVGCanvas c = generateCanvas(title, style, scriptText, cache, limits);
+        return c == null ? null : c.generateSVG();
+    }
+
+    /**
+     * Lays out the diagram, so that SVG can be written straight to a stream.
+     * @return canvas of the diagram or null if the script is invalid
+     */
+    public static SVGCanvas generateCanvas(String title, StyleConfig style, String scriptText) throws IOException {
+        return generateCanvas(title, style, scriptText, null);
+    }
+
+    /**
+     * Lays out the diagram, the spec is parsed only if it is not in the cache.
+     * @param cache Parsed specs of earlier runs, or null
+     * @return canvas of the diagram or null if the script is invalid
+     */
+    public static SVGCanvas generateCanvas(String title, StyleConfig style, String scriptText, SpecCache cache)
+            throws IOException {
+        return generateCanvas(title, style, scriptText, cache, Limits.NONE);
+    }
+
+    /**
+     * Lays out the diagram of a spec that can't be trusted.
+     * @param cache Parsed specs of earlier runs, or null
+     * @param limits Limits of the time, units and depth of the diagram
+     * @return canvas of the diagram or null if the script is invalid
+     * @throws org.atpfivt.jsyntrax.exceptions.LimitExceededException the diagram is out of the limits
+     */
+    public static SVGCanvas generateCanvas(String title, StyleConfig style, String scriptText, SpecCache cache,
+                                           Limits limits) throws IOException {
         // parse script
-        Unit root;
+        Configuration root;
         String titleInSpecFile;
-        try {
-            // parse spec
-            Parser parser = new Parser(scriptText);
-            root = parser.getNode();
-            titleInSpecFile = parser.getTitle();
-        } catch (CompilationFailedException e) {
-            System.out.println("Something is wrong with input script:");
-            System.out.println("\t" + e.getMessage());
-            return null;
+        SpecCache.Entry cached = cache == null ? null : cache.load(scriptText);
+        if (cached != null) {
+            root = cached.getConfiguration();
+            titleInSpecFile = cached.getTitle();
+        } else {
+            // plain specs are parsed without Groovy, scripts are run by the Groovy parser
+            SpecParser spec = SpecParser.parse(scriptText, limits);
+            if (spec != null) {
+                root = spec.getNode();
+                titleInSpecFile = spec.getTitle();
+            } else {
+                try {
+                    // parse spec
+                    Parser parser = new Parser(scriptText, limits);
+                    root = parser.getNode();
+                    titleInSpecFile = parser.getTitle();
+                } catch (CompilationFailedException e) {
+                    System.out.println("Something is wrong with input script:");
+                    System.out.println("\t" + e.getMessage());
+                    return null;
+                }
+            }
+            if (cache != null) {
+                try {
+                    cache.store(scriptText, root, titleInSpecFile);
+                } catch (IOException | IllegalArgumentException e) {
+                    // the diagram is still drawn, the spec is parsed again next time
+                    System.out.println("Failed to cache the spec: " + e.getMessage());
+                }
+            }
         }
 
         // generate SVG
         SVGCanvas c = new SVGCanvasBuilder()
                 .withStyle(style)
                 .withTitle(title != null ? title : titleInSpecFile)
+                .withLimits(limits)
                 .generateSVG(root);
-        return c.generateSVG();
+        return c;
+    }
+
+    /**
+     * Lays out the diagram of a spec written as JSON, no script is run.
+     * @param json Reader of the spec, read to its end
+     * @return canvas of the diagram or null if the spec is invalid
+     */
+    public static SVGCanvas generateCanvasFromJson(String title, StyleConfig style, Reader json) throws IOException {
+        return generateCanvasFromJson(title, style, json, Limits.NONE);
+    }
+
+    /**
+     * Lays out the diagram of a spec written as JSON that can't be trusted.
+     * @param json Reader of the spec, read to its end
+     * @param limits Limits of the time, units and depth of the diagram
+     * @return canvas of the diagram or null if the spec is invalid
+     * @throws org.atpfivt.jsyntrax.exceptions.LimitExceededException the diagram is out of the limits
+     */
+    public static SVGCanvas generateCanvasFromJson(String title, StyleConfig style, Reader json, Limits limits)
+            throws IOException {
+        JsonSpecParser spec;
+        try {
+            spec = JsonSpecParser.parse(json, limits);
+        } catch (JsonSpecException e) {
+            System.out.println("Something is wrong with input JSON:");
+            System.out.println("\t" + e.getMessage());
+            return null;
+        }
+        return new SVGCanvasBuilder()
+                .withStyle(style)
+                .withTitle(title != null ? title : spec.getTitle())
+                .withLimits(limits)
+                .generateSVG(spec.getNode());
+    }
+
+    /**
+     * @brief PNG output through Batik
+     * @details Batik classes are loaded only with this class, so images drawn with Java2D do not need them.
+     */
+    private static final class BatikOutput {
+        private BatikOutput() {
+        }
+
+        /**
+         * @return false if the image is not transcoded, out then holds a partial image
+         */
+        private static boolean writePNG(SVGCanvas canvas, OutputStream out) {
+            try {
+                SVGTranscoder.svg2Png(canvas, out);
+                return true;
+            } catch (TranscoderException e) {
+                System.out.println("Failed to transcode .svg image: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @brief creates an empty file in the directory of the output, with the permissions of the output
+     */
+    private static Path createTempOutput(Path output) throws IOException {
+        Path temp = Files.createTempFile(output.toAbsolutePath().getParent(), ".jsyntrax", ".tmp");
+        try {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(output));
+        } catch (UnsupportedOperationException | IOException e) {
+            // the file keeps the permissions of a new temporary file
+        }
+        return temp;
     }
 
     static boolean checkPathsFromArgs(InputArguments iArgs) {
@@ -0,0 +1,155 @@
+package org.atpfivt.jsyntrax;
+
+import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.UnitCodec;
+import org.atpfivt.jsyntrax.units.tracks.Track;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @brief directory of parsed diagram specs, so unchanged specs are not compiled again in later runs
+ * @details A spec is stored as the units it builds, its title and URL map, in a file named by a hash
+ * of the spec text and the JSyntrax version. Files that can't be read are taken as missing
+ * and written again, and a file is written to its place in one move, so concurrent runs
+ * never see it half written.
+ */
+public final class SpecCache {
+    private static final int MAGIC = 0x4a535943;
+    // changes when the file layout or the units change
+    private static final int FORMAT = 1;
+    private static final String EXTENSION = ".units";
+
+    private final Path dir;
+    private final String version;
+
+    public SpecCache(Path dir) {
+        this(dir, String.valueOf(Main.class.getPackage().getImplementationVersion()));
+    }
+
+    SpecCache(Path dir, String version) {
+        this.dir = dir;
+        this.version = version;
+    }
+
+    /**
+     * @return the spec parsed in an earlier run or null if it is not stored
+     */
+    public Entry load(String scriptText) {
+        String key = getKey(scriptText);
+        Path file = dir.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !key.equals(UnitCodec.readString(in))) {
+                return null;
+            }
+            String title = in.readBoolean() ? UnitCodec.readString(in) : null;
+            int urls = in.readInt();
+            if (urls < 0) {
+                return null;
+            }
+            Map<String, String> urlMap = new LinkedHashMap<>();
+            for (int i = 0; i < urls; ++i) {
+                urlMap.put(UnitCodec.readString(in), UnitCodec.readString(in));
+            }
+            Unit track = UnitCodec.read(in);
+            if (!(track instanceof Track)) {
+                return null;
+            }
+            return new Entry(new Configuration((Track) track, urlMap), title);
+        } catch (IOException | RuntimeException e) {
+            // units that tracks reject are as broken as the file
+            return null;
+        }
+    }
+
+    /**
+     * @brief stores the parsed spec for later runs
+     * @throws IllegalArgumentException the spec has units or URLs that can't be stored
+     */
+    public void store(String scriptText, Configuration configuration, String title) throws IOException {
+        for (Map.Entry<?, ?> url : configuration.getUrlMap().entrySet()) {
+            if (!(url.getKey() instanceof String) || !(url.getValue() instanceof String)) {
+                throw new IllegalArgumentException("URL map of strings expected: " + url);
+            }
+        }
+        String key = getKey(scriptText);
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                UnitCodec.writeString(out, key);
+                out.writeBoolean(title != null);
+                if (title != null) {
+                    UnitCodec.writeString(out, title);
+                }
+                out.writeInt(configuration.getUrlMap().size());
+                for (Map.Entry<String, String> url : configuration.getUrlMap().entrySet()) {
+                    UnitCodec.writeString(out, url.getKey());
+                    UnitCodec.writeString(out, url.getValue());
+                }
+                UnitCodec.write(out, configuration.getTrack());
+            }
+            Path file = dir.resolve(key + EXTENSION);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private String getKey(String scriptText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((FORMAT + "\n" + version + "\n").getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest(scriptText.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @brief spec read from the cache
+     */
+    public static final class Entry {
+        private final Configuration configuration;
+        private final String title;
+
+        private Entry(Configuration configuration, String title) {
+            this.configuration = configuration;
+            this.title = title;
+        }
+
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+}
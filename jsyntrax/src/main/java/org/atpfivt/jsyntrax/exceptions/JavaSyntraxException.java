@@ -1,4 +1,10 @@
 package org.atpfivt.jsyntrax.exceptions;
 
 public class JavaSyntraxException extends Exception {
+    public JavaSyntraxException() {
+    }
+
+    public JavaSyntraxException(String message) {
+        super(message);
+    }
 }
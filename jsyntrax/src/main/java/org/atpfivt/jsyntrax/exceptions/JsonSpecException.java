@@ -0,0 +1,27 @@
+package org.atpfivt.jsyntrax.exceptions;
+
+/**
+ * @brief the JSON spec is malformed or does not describe a diagram
+ */
+public class JsonSpecException extends JavaSyntraxException {
+    private final int line;
+    private final int column;
+
+    /**
+     * @param line line of the error, from 1
+     * @param column column of the error, from 1
+     */
+    public JsonSpecException(int line, int column, String message) {
+        super("Line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,44 @@
+package org.atpfivt.jsyntrax.exceptions;
+
+/**
+ * @brief the diagram takes more time, units or depth than its limits allow
+ * @details Unchecked, as it is thrown from scripts and from layout, which declare no exceptions.
+ */
+public class LimitExceededException extends RuntimeException {
+    private final Limit limit;
+    private final long maximum;
+
+    /**
+     * @brief exceeded limit
+     */
+    public enum Limit {
+        time, units, depth
+    }
+
+    /**
+     * @param maximum milliseconds for time, else the maximum number
+     */
+    public LimitExceededException(Limit limit, long maximum) {
+        super(getMessage(limit, maximum));
+        this.limit = limit;
+        this.maximum = maximum;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    private static String getMessage(Limit limit, long maximum) {
+        if (limit == Limit.time) {
+            return "Diagram takes longer than " + maximum + " ms";
+        } else if (limit == Limit.units) {
+            return "Diagram has more than " + maximum + " units";
+        } else {
+            return "Diagram is nested deeper than " + maximum + " tracks";
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.generators.elements.ArcElement;
+import org.atpfivt.jsyntrax.generators.elements.BoxBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.BubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.BubbleElementBase;
+import org.atpfivt.jsyntrax.generators.elements.Element;
+import org.atpfivt.jsyntrax.generators.elements.ElementVisitor;
+import org.atpfivt.jsyntrax.generators.elements.HexBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.LineElement;
+import org.atpfivt.jsyntrax.generators.elements.OvalElement;
+import org.atpfivt.jsyntrax.generators.elements.PaintClasses;
+import org.atpfivt.jsyntrax.generators.elements.SVGAttributes;
+import org.atpfivt.jsyntrax.generators.elements.SVGNodes;
+import org.atpfivt.jsyntrax.generators.elements.SVGPath;
+import org.atpfivt.jsyntrax.generators.elements.TitleElement;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.util.StringUtils;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * @brief builds the diagram of a canvas as an SVG DOM tree instead of writing it
+ * @details The tree draws the same picture as SVGCanvas.generateSVG, with the plain form of every element:
+ * compact classes, symbols and shadow filters are not used.
+ */
+public final class DOMRenderer {
+    private final SVGCanvas canvas;
+
+    public DOMRenderer(SVGCanvas canvas) {
+        this.canvas = canvas;
+    }
+
+    /**
+     * @param dom implementation to create the document with, like SVGDOMImplementation of Batik
+     */
+    public Document generateDocument(DOMImplementation dom) {
+        SVGCanvas.Page page = canvas.layout();
+        StyleConfig style = canvas.getStyle();
+        Document doc = dom.createDocument(SVGNodes.SVG_NS, "svg", null);
+        org.w3c.dom.Element root = doc.getDocumentElement();
+        root.setAttributeNS(SVGNodes.XML_NS, "xml:space", "preserve");
+        SVGNodes.set(root, "width", page.getWidth(), "height", page.getHeight(), "version", "1.1");
+        if (style.isViewBoxScale()) {
+            root.setAttributeNS(null, "viewBox", page.getViewBox());
+        }
+
+        StringBuilder css = new StringBuilder();
+        canvas.writeCSS(css, page.getElementScale(), new PaintClasses(false));
+        SVGNodes.append(root, "style", SVGAttributes.of("type", "text/css"))
+                .appendChild(doc.createCDATASection(css.toString()));
+
+        org.w3c.dom.Element defs = SVGNodes.append(root, "defs", SVGAttributes.NONE);
+        org.w3c.dom.Element marker = SVGNodes.append(defs, "marker", SVGCanvas.ARROW_MARKER);
+        SVGNodes.set(SVGNodes.append(marker, "path", SVGAttributes.NONE),
+                "d", SVGCanvas.ARROW_PATH, "fill", StringUtils.toHex(style.getLineColor()));
+
+        if (!style.isTransparent()) {
+            SVGNodes.append(root, "rect", SVGAttributes.of("width", "100%", "height", "100%", "fill", "white"));
+        }
+        ElementNodes nodes = new ElementNodes(root, style);
+        for (Element e : canvas.getElements()) {
+            if (style.isShadow()) {
+                nodes.shadow = true;
+                e.accept(nodes);
+            }
+            nodes.shadow = false;
+            e.accept(nodes);
+        }
+        return doc;
+    }
+
+    /**
+     * @brief appends elements, or shadows of nodes, to the root of the document
+     */
+    private static final class ElementNodes implements ElementVisitor {
+        private final Node parent;
+        private final StyleConfig style;
+        private boolean shadow;
+
+        private ElementNodes(Node parent, StyleConfig style) {
+            this.parent = parent;
+            this.style = style;
+        }
+
+        @Override
+        public void visitBubble(BubbleElement e) {
+            appendNode(e, (x, y) -> NodeOutline.of(e, x, y));
+        }
+
+        @Override
+        public void visitBoxBubble(BoxBubbleElement e) {
+            appendNode(e, (x, y) -> NodeOutline.of(e, x, y));
+        }
+
+        @Override
+        public void visitHexBubble(HexBubbleElement e) {
+            appendNode(e, (x, y) -> NodeOutline.of(e, x, y));
+        }
+
+        @Override
+        public void visitTitle(TitleElement e) {
+            if (!shadow) {
+                appendText(e);
+            }
+        }
+
+        @Override
+        public void visitOval(OvalElement e) {
+            if (!shadow) {
+                SVGNodes.set(SVGNodes.append(parent, "circle", e.getAttributes(style)),
+                        "cx", (e.getX0() + e.getX1()) / 2, "cy", (e.getY0() + e.getY1()) / 2,
+                        "r", (e.getX1() - e.getX0()) / 2);
+            }
+        }
+
+        @Override
+        public void visitLine(LineElement e) {
+            if (!shadow) {
+                int[] ends = e.getEnds();
+                SVGNodes.set(SVGNodes.append(parent, "line", e.getAttributes(style)),
+                        "x1", ends[0], "y1", ends[1], "x2", ends[2], "y2", ends[3]);
+            }
+        }
+
+        @Override
+        public void visitArc(ArcElement e) {
+            if (!shadow) {
+                int[] ends = e.getEnds();
+                int rad = (e.getX1() - e.getX0()) / 2;
+                SVGNodes.set(SVGNodes.append(parent, "path", SVGPath.getStrokeAttributes(style, e.getWidth())),
+                        "d", "M" + ends[0] + "," + ends[1] + " A" + rad + "," + rad + " 0 0,0 " + ends[2] + ","
+                                + ends[3]);
+            }
+        }
+
+        private void appendNode(BubbleElementBase e, NodeOutline.Factory outline) {
+            if (shadow) {
+                int offset = e.getWidth() + 1;
+                outline.moveBy(offset, offset).toDOM(parent, BubbleElementBase.getShadowAttributes(style));
+            } else {
+                outline.moveBy(0, 0).toDOM(parent, e.getShapeAttributes(style));
+                appendText(e);
+            }
+        }
+
+        private void appendText(BubbleElementBase e) {
+            Node link = parent;
+            String fontClass = e.getFontName();
+            if (e.getHref() != null) {
+                link = SVGNodes.append(parent, "a", SVGAttributes.of("target", "_parent"));
+                ((org.w3c.dom.Element) link).setAttributeNS(SVGNodes.XLINK_NS, "xlink:href", e.getHref());
+                fontClass += " link";
+            }
+            org.w3c.dom.Element text = SVGNodes.append(link, "text", SVGAttributes.NONE);
+            SVGNodes.set(text, "class", fontClass, "x", e.getX(style, 0), "y", e.getTextBaseline(style, 0));
+            text.setTextContent(e.getText());
+        }
+    }
+}
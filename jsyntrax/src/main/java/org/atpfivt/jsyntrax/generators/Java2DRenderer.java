@@ -0,0 +1,383 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.generators.elements.ArcElement;
+import org.atpfivt.jsyntrax.generators.elements.BoxBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.BubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.BubbleElementBase;
+import org.atpfivt.jsyntrax.generators.elements.Element;
+import org.atpfivt.jsyntrax.generators.elements.ElementVisitor;
+import org.atpfivt.jsyntrax.generators.elements.HexBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.LineElement;
+import org.atpfivt.jsyntrax.generators.elements.OvalElement;
+import org.atpfivt.jsyntrax.generators.elements.TitleElement;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.util.PNGStreamEncoder;
+import org.atpfivt.jsyntrax.util.Pair;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @brief draws the diagram of a canvas on raster images with Java2D, without writing SVG
+ * @details Images are drawn the way SVG viewers draw the document, fonts given in points
+ * are sized in pixels of 96 dpi like in CSS.
+ */
+public final class Java2DRenderer {
+    // memory for one band of PNG images
+    private static final int BAND_BYTES = 1 << 22;
+    // CSS pixels are 1/96 inch, points are 1/72 inch
+    private static final float PIXELS_PER_POINT = 96f / 72;
+    // generic and common font-family names, resolved like Batik does
+    private static final Map<String, String> RASTER_FONT_FAMILIES = Map.of(
+            "sans-serif", Font.SANS_SERIF,
+            "serif", Font.SERIF,
+            "times", Font.SERIF,
+            "times new roman", Font.SERIF,
+            "cursive", Font.DIALOG,
+            "monospace", Font.MONOSPACED,
+            "courier", Font.MONOSPACED);
+
+    private final SVGCanvas canvas;
+
+    public Java2DRenderer(SVGCanvas canvas) {
+        this.canvas = canvas;
+    }
+
+    public BufferedImage generateImage() {
+        SVGCanvas.Page page = canvas.layout();
+        BufferedImage image = new BufferedImage(page.getWidth(), page.getHeight(),
+                canvas.getStyle().isTransparent() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        drawBand(image, page, getRasterFonts(page), 0);
+        return image;
+    }
+
+    /**
+     * @brief writes the diagram to the stream as a PNG image drawn like generateImage, the stream is left open
+     */
+    public void generatePNG(OutputStream out) throws IOException {
+        generatePNG(out, BAND_BYTES);
+    }
+
+    /**
+     * @brief writes the diagram as a PNG image drawn in horizontal bands, the stream is left open
+     * @details Only one band of the image is kept in memory. Every band draws the elements reaching into it
+     * and its rows are encoded before the next band is drawn, so memory does not grow with the image.
+     * @param bandBytes memory for the pixels of one band, at least one row is drawn at once
+     */
+    public void generatePNG(OutputStream out, int bandBytes) throws IOException {
+        SVGCanvas.Page page = canvas.layout();
+        int width = page.getWidth();
+        int height = page.getHeight();
+        int bandHeight = (int) Math.max(1, Math.min(height, bandBytes / (4L * width)));
+        BufferedImage band = new BufferedImage(width, bandHeight, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) band.getRaster().getDataBuffer()).getData();
+        Map<String, Pair<Font, Color>> fonts = getRasterFonts(page);
+
+        PNGStreamEncoder png = new PNGStreamEncoder(out, width, height, canvas.getStyle().isTransparent());
+        for (int top = 0; top < height; top += bandHeight) {
+            drawBand(band, page, fonts, top);
+            int rows = Math.min(bandHeight, height - top);
+            for (int row = 0; row < rows; ++row) {
+                png.writeRow(pixels, row * width);
+            }
+        }
+        png.finish();
+    }
+
+    /**
+     * @brief draws the part of the page starting at row top onto the image, over a blank background
+     */
+    private void drawBand(BufferedImage image, SVGCanvas.Page page, Map<String, Pair<Font, Color>> fonts, int top) {
+        StyleConfig style = canvas.getStyle();
+        Graphics2D g = image.createGraphics();
+        try {
+            if (style.isTransparent()) {
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, image.getWidth(), image.getHeight());
+                g.setComposite(AlphaComposite.SrcOver);
+            } else {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            }
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g.translate(0, -top);
+            double y0 = top;
+            double y1 = top + image.getHeight();
+            if (style.isViewBoxScale()) {
+                g.scale(page.getScale(), page.getScale());
+                g.translate(-page.getX(), -page.getY());
+                y0 = y0 / page.getScale() + page.getY();
+                y1 = y1 / page.getScale() + page.getY();
+            }
+
+            // strokes, arrows, shadows and text may reach out of the boxes of elements
+            double reach = (6 * Math.max(style.getLineWidth(), style.getOutlineWidth()) + 8) * page.getElementScale();
+            ElementPainter painter = new ElementPainter(g, style, fonts);
+            for (Element e : canvas.getElements()) {
+                if (Math.max(e.getY0(), e.getY1()) + reach < y0 || Math.min(e.getY0(), e.getY1()) - reach > y1) {
+                    continue;
+                }
+                if (style.isShadow()) {
+                    painter.shadow = true;
+                    e.accept(painter);
+                }
+                painter.shadow = false;
+                e.accept(painter);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * @return fonts and text colors by font class name, sized in pixels
+     */
+    private Map<String, Pair<Font, Color>> getRasterFonts(SVGCanvas.Page page) {
+        Map<String, Pair<Font, Color>> fonts = new HashMap<>();
+        for (Map.Entry<String, Pair<Font, Color>> f : canvas.getFonts().entrySet()) {
+            Font font = f.getValue().f;
+            float size = (int) (font.getSize() * page.getElementScale()) * PIXELS_PER_POINT;
+            fonts.put(f.getKey(), new Pair<>(toRasterFont(font, size), f.getValue().s));
+        }
+        return fonts;
+    }
+
+    /**
+     * @return font of the family an SVG viewer would choose for the font-family name of the font
+     */
+    private static Font toRasterFont(Font font, float size) {
+        String family = RASTER_FONT_FAMILIES.get(font.getName().toLowerCase(Locale.ROOT));
+        if (family == null) {
+            // unknown families fall back to sans serif instead of the dialog font
+            boolean known = !Font.DIALOG.equals(font.getFamily()) || Font.DIALOG.equalsIgnoreCase(font.getName());
+            family = known ? font.getName() : Font.SANS_SERIF;
+        }
+        return new Font(family, font.getStyle(), 1).deriveFont(size);
+    }
+
+    /**
+     * @brief draws elements, or shadows of nodes, like SVG viewers draw their SVG
+     */
+    private static final class ElementPainter implements ElementVisitor {
+        // fill of the link class
+        private static final Color LINK_COLOR = new Color(0x0D, 0x47, 0xA1);
+        // default stroke-miterlimit of SVG
+        private static final float MITER_LIMIT = 4;
+        private static final double ARROW_REF_X = 2.5;
+        private static final double ARROW_REF_Y = 2;
+        // the path of the arrow marker written to SVG
+        private static final Path2D ARROW = new Path2D.Double();
+
+        static {
+            ARROW.moveTo(0, 0);
+            ARROW.lineTo(0.5, 2);
+            ARROW.lineTo(0, 4);
+            ARROW.lineTo(4.5, 2);
+            ARROW.closePath();
+        }
+
+        private final Graphics2D g;
+        private final StyleConfig style;
+        // fonts and text colors by font class name, sized in pixels
+        private final Map<String, Pair<Font, Color>> fonts;
+        private boolean shadow;
+
+        private ElementPainter(Graphics2D g, StyleConfig style, Map<String, Pair<Font, Color>> fonts) {
+            this.g = g;
+            this.style = style;
+            this.fonts = fonts;
+        }
+
+        @Override
+        public void visitBubble(BubbleElement e) {
+            int x0 = e.getX0();
+            int y0 = e.getY0();
+            int x1 = e.getX1();
+            int y1 = e.getY1();
+
+            int rad = (y1 - y0) / 2;
+            int lft = x0 + rad;
+            int rgt = x1 - rad;
+
+            if (Math.abs(rgt - lft) <= 1) {
+                int xc = (x0 + x1) / 2;
+                int yc = (y0 + y1) / 2;
+                paintNode(e, new Ellipse2D.Double(xc - rad, yc - rad, 2 * rad, 2 * rad));
+                return;
+            }
+            // half circles on both sides, as the arcs of the SVG path
+            double height = y1 - y0;
+            paintNode(e, new RoundRectangle2D.Double(lft - height / 2, y0, rgt - lft + height, height,
+                    height, height));
+        }
+
+        @Override
+        public void visitBoxBubble(BoxBubbleElement e) {
+            paintNode(e, new Rectangle2D.Double(e.getX0(), e.getY0(), e.getX1() - e.getX0(), e.getY1() - e.getY0()));
+        }
+
+        @Override
+        public void visitHexBubble(HexBubbleElement e) {
+            int x0 = e.getX0();
+            int y0 = e.getY0();
+            int x1 = e.getX1();
+            int y1 = e.getY1();
+
+            int rad = (y1 - y0) / 2;
+            int lft = x0 + rad;
+            int rgt = x1 - rad;
+            int rpad = rad / 2;
+
+            int xc = (x0 + x1) / 2;
+            int yc = (y0 + y1) / 2;
+
+            if (Math.abs(rgt - lft) <= 1) {
+                lft = xc;
+                rgt = yc;
+            }
+
+            Path2D path = new Path2D.Double();
+            path.moveTo(lft - rpad, y1);
+            path.lineTo(rgt + rpad, y1);
+            path.lineTo(rgt + rad, yc);
+            path.lineTo(rgt + rpad, y0);
+            path.lineTo(lft - rpad, y0);
+            path.lineTo(lft - rad, yc);
+            path.closePath();
+            paintNode(e, path);
+        }
+
+        @Override
+        public void visitTitle(TitleElement e) {
+            if (!shadow) {
+                paintText(e);
+            }
+        }
+
+        @Override
+        public void visitOval(OvalElement e) {
+            if (shadow) {
+                return;
+            }
+            int xc = (e.getX0() + e.getX1()) / 2;
+            int yc = (e.getY0() + e.getY1()) / 2;
+            int rad = (e.getX1() - e.getX0()) / 2;
+
+            Shape circle = new Ellipse2D.Double(xc - rad, yc - rad, 2 * rad, 2 * rad);
+            // the fill is written to SVG without opacity
+            g.setColor(new Color(e.getFill().getRGB()));
+            g.fill(circle);
+            stroke(circle, style.getLineColor(), e.getWidth());
+        }
+
+        @Override
+        public void visitLine(LineElement e) {
+            if (shadow) {
+                return;
+            }
+            int[] ends = e.getEnds();
+            int width = e.getWidth();
+            stroke(new Line2D.Double(ends[0], ends[1], ends[2], ends[3]), style.getLineColor(), width);
+            if (e.getArrow() != null) {
+                // the arrow marker, in units of stroke width and oriented along the line
+                AffineTransform marker = AffineTransform.getTranslateInstance(ends[2], ends[3]);
+                marker.rotate(Math.atan2(ends[3] - ends[1], ends[2] - ends[0]));
+                marker.scale(width, width);
+                marker.translate(-ARROW_REF_X, -ARROW_REF_Y);
+                g.setColor(new Color(style.getLineColor().getRGB()));
+                g.fill(ARROW.createTransformedShape(marker));
+            }
+        }
+
+        @Override
+        public void visitArc(ArcElement e) {
+            if (shadow) {
+                return;
+            }
+            int x0 = e.getX0();
+            int y0 = e.getY0();
+            int x1 = e.getX1();
+            int y1 = e.getY1();
+
+            int xc = (x0 + x1) / 2;
+            int yc = (y0 + y1) / 2;
+            int rad = (x1 - x0) / 2;
+
+            // the same counterclockwise arc as getEnds gives
+            int start = e.getStartAngle() % 360;
+            int stop = (start + e.getExtentAngle()) % 360;
+            if (e.getExtentAngle() < 0) {
+                int tmp = start;
+                start = stop;
+                stop = tmp;
+            }
+            int extent = Math.floorMod(stop - start, 360);
+
+            stroke(new Arc2D.Double(xc - rad, yc - rad, 2 * rad, 2 * rad, start, extent, Arc2D.OPEN),
+                    style.getLineColor(), e.getWidth());
+        }
+
+        private void paintNode(BubbleElementBase e, Shape shape) {
+            if (shadow) {
+                int offset = e.getWidth() + 1;
+                g.translate(offset, offset);
+                g.setColor(style.getShadowFill());
+                g.fill(shape);
+                g.translate(-offset, -offset);
+                return;
+            }
+            g.setColor(e.getFill());
+            g.fill(shape);
+            stroke(shape, style.getLineColor(), e.getWidth());
+            paintText(e);
+        }
+
+        private void paintText(BubbleElementBase e) {
+            // the same position as the SVG text has
+            int y = e.getTextBaseline(style, 0);
+            Pair<Font, Color> font = fonts.get(e.getFontName());
+            g.setFont(font.f);
+            g.setColor(e.getHref() == null ? font.s : LINK_COLOR);
+            // glyphs are filled as shapes like SVG viewers do, without hinting
+            GlyphVector glyphs = font.f.createGlyphVector(g.getFontRenderContext(), e.getText());
+            double width = glyphs.getLogicalBounds().getWidth();
+            g.fill(glyphs.getOutline((float) (e.getX(style, 0) - width * e.getAnchor(style)), y));
+        }
+
+        /**
+         * @brief draws the outline of the shape like the stroke attributes of SVG do
+         */
+        private void stroke(Shape shape, Color color, int width) {
+            // SVG does not draw strokes of zero width
+            if (width <= 0) {
+                return;
+            }
+            // colors of strokes are written to SVG without opacity
+            g.setColor(new Color(color.getRGB()));
+            g.setStroke(new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, MITER_LIMIT));
+            g.draw(shape);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.Configuration;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.nodes.Node;
+import org.atpfivt.jsyntrax.units.tracks.Track;
+import org.atpfivt.jsyntrax.units.tracks.stack.Indentstack;
+import org.atpfivt.jsyntrax.units.tracks.stack.Stack;
+import org.atpfivt.jsyntrax.util.Pair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @brief layouts of tracks repeated in a diagram
+ * @details Every unit of the diagram gets a structural id, equal ids mean equal subtrees:
+ * same classes, node texts and indents all the way down. A track which occurs at least twice
+ * is laid out once per direction, later occurrences are copied from the canvas and only moved.
+ * The memo is made for one build, so the style is the same for all its layouts.
+ */
+final class LayoutMemo {
+    static final int NONE = -1;
+
+    // structural id of every unit of the diagram
+    private final IdentityHashMap<Unit, Integer> ids = new IdentityHashMap<>();
+    // number of occurrences of every id
+    private final ArrayList<Integer> counts = new ArrayList<>();
+    // layout of every id changes the indent of the builder
+    private final ArrayList<Boolean> stacks = new ArrayList<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    LayoutMemo(Unit root) {
+        HashMap<Key, Integer> keys = new HashMap<>();
+        // post-order without recursion, a unit gets its id after all its children
+        ArrayDeque<Pair<Unit, Iterator<Unit>>> open = new ArrayDeque<>();
+        open.push(new Pair<>(root, getChildren(root).iterator()));
+        while (!open.isEmpty()) {
+            Pair<Unit, Iterator<Unit>> top = open.peek();
+            if (top.s.hasNext()) {
+                Unit child = top.s.next();
+                if (child != null && !ids.containsKey(child)) {
+                    open.push(new Pair<>(child, getChildren(child).iterator()));
+                } else {
+                    count(child);
+                }
+                continue;
+            }
+            open.pop();
+            identify(top.f, keys);
+            count(top.f);
+        }
+    }
+
+    private static List<Unit> getChildren(Unit unit) {
+        if (unit instanceof Configuration) {
+            return Arrays.asList(unit.getTrack());
+        }
+        return unit.getUnits();
+    }
+
+    private void identify(Unit unit, Map<Key, Integer> keys) {
+        List<Unit> children = getChildren(unit);
+        int[] childIds = new int[children.size()];
+        boolean stack = unit instanceof Stack;
+        for (int i = 0; i < childIds.length; ++i) {
+            Unit child = children.get(i);
+            childIds[i] = child == null ? NONE : ids.get(child);
+            stack |= child != null && stacks.get(childIds[i]);
+        }
+        String label = null;
+        if (unit instanceof Node) {
+            label = unit.toString();
+        } else if (unit instanceof Indentstack) {
+            label = Integer.toString(((Indentstack) unit).getIndent());
+        }
+        Key key = new Key(unit.getClass(), label, childIds);
+        // configurations change links of nodes, so each of them is unique
+        Integer id = unit instanceof Configuration ? null : keys.get(key);
+        if (id == null) {
+            id = counts.size();
+            counts.add(0);
+            stacks.add(stack);
+            keys.put(key, id);
+        }
+        ids.put(unit, id);
+    }
+
+    private void count(Unit unit) {
+        // a unit is counted when it is identified and when it is met again
+        Integer id = unit == null ? null : ids.get(unit);
+        if (id != null) {
+            counts.set(id, counts.get(id) + 1);
+        }
+    }
+
+    /**
+     * @return key of the unit layout in the given direction or NONE if the unit is not repeated
+     */
+    int key(Unit unit, boolean ltor) {
+        if (!(unit instanceof Track)) {
+            return NONE;
+        }
+        Integer id = ids.get(unit);
+        if (id == null || counts.get(id) < 2) {
+            return NONE;
+        }
+        return 2 * id + (ltor ? 1 : 0);
+    }
+
+    /**
+     * @return true if the layout of the key changes the indent of the builder
+     */
+    boolean hasStack(int key) {
+        return stacks.get(key / 2);
+    }
+
+    Entry get(int key) {
+        return entries.get(key);
+    }
+
+    void put(int key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * Forgets all layouts, for example when links of nodes are changed.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @brief layout of a track
+     */
+    static final class Entry {
+        private final SVGCanvas.Fragment fragment;
+        private final Pair<Integer, Integer> endpoint;
+        private final Integer indent;
+
+        /**
+         * @param fragment elements of the track, null if the track is not drawn
+         * @param endpoint exit point of the track, null if the track is not drawn
+         * @param indent indent of the builder after the layout
+         */
+        Entry(SVGCanvas.Fragment fragment, Pair<Integer, Integer> endpoint, Integer indent) {
+            this.fragment = fragment;
+            this.endpoint = endpoint;
+            this.indent = indent;
+        }
+
+        SVGCanvas.Fragment getFragment() {
+            return fragment;
+        }
+
+        Pair<Integer, Integer> getEndpoint() {
+            return endpoint;
+        }
+
+        Integer getIndent() {
+            return indent;
+        }
+    }
+
+    /**
+     * @brief structure of a unit with its children replaced by their ids
+     */
+    private static final class Key {
+        private final Class<?> type;
+        private final String label;
+        private final int[] children;
+        private final int hash;
+
+        private Key(Class<?> type, String label, int[] children) {
+            this.type = type;
+            this.label = label;
+            this.children = children;
+            int h = type.hashCode();
+            h = 31 * h + (label == null ? 0 : label.hashCode());
+            this.hash = 31 * h + Arrays.hashCode(children);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && type == other.type
+                    && (label == null ? other.label == null : label.equals(other.label))
+                    && Arrays.equals(children, other.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.generators.elements.BoxBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.BubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.HexBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.SVGAttributes;
+import org.atpfivt.jsyntrax.generators.elements.SVGNodes;
+import org.w3c.dom.Node;
+
+/**
+ * @brief outline of a node as an SVG element, the same in SVG text and DOM trees
+ */
+final class NodeOutline {
+    /**
+     * @brief outline of one node moved by (dx, dy)
+     */
+    interface Factory {
+        NodeOutline moveBy(int dx, int dy);
+    }
+
+    private final String name;
+    private final SVGAttributes geometry;
+
+    private NodeOutline(String name, SVGAttributes geometry) {
+        this.name = name;
+        this.geometry = geometry;
+    }
+
+    /**
+     * @return circle if the bubble is not wider than high, otherwise rectangle with half circles on both sides
+     */
+    static NodeOutline of(BubbleElement e, int dx, int dy) {
+        int x0 = e.getX0() + dx;
+        int y0 = e.getY0() + dy;
+        int x1 = e.getX1() + dx;
+        int y1 = e.getY1() + dy;
+
+        int rad = (y1 - y0) / 2;
+        int lft = x0 + rad;
+        int rgt = x1 - rad;
+
+        if (Math.abs(rgt - lft) <= 1) {
+            return new NodeOutline("circle", SVGAttributes.of("cx", (x0 + x1) / 2, "cy", (y0 + y1) / 2, "r", rad));
+        }
+        return new NodeOutline("path", SVGAttributes.of("d",
+                "M" + lft + "," + y1 + " A" + rad + "," + rad + " 0 0,1 " + lft + "," + y0
+                        + " H" + rgt + " A" + rad + "," + rad + " 0 0,1 " + rgt + "," + y1 + " z"));
+    }
+
+    static NodeOutline of(BoxBubbleElement e, int dx, int dy) {
+        return new NodeOutline("rect", SVGAttributes.of("x", e.getX0() + dx, "y", e.getY0() + dy,
+                "width", e.getX1() - e.getX0(), "height", e.getY1() - e.getY0()));
+    }
+
+    static NodeOutline of(HexBubbleElement e, int dx, int dy) {
+        int x0 = e.getX0() + dx;
+        int y0 = e.getY0() + dy;
+        int x1 = e.getX1() + dx;
+        int y1 = e.getY1() + dy;
+
+        int rad = (y1 - y0) / 2;
+        int lft = x0 + rad;
+        int rgt = x1 - rad;
+        int rpad = rad / 2;
+
+        int xc = (x0 + x1) / 2;
+        int yc = (y0 + y1) / 2;
+
+        if (Math.abs(rgt - lft) <= 1) {
+            lft = xc;
+            rgt = yc;
+        }
+
+        return new NodeOutline("path", SVGAttributes.of("d",
+                "M" + (lft - rpad) + "," + y1 + " H" + (rgt + rpad) + " L" + (rgt + rad) + "," + yc
+                        + " L" + (rgt + rpad) + "," + y0 + " H" + (lft - rpad) + " L" + (lft - rad) + "," + yc + " z"));
+    }
+
+    /**
+     * @param attributes presentation attributes of the outline or its class
+     */
+    void toSVG(StringBuilder sb, String attributes) {
+        sb.append('<').append(name).append(' ');
+        geometry.toSVG(sb);
+        sb.append(' ').append(attributes).append(" />\n");
+    }
+
+    void toDOM(Node parent, SVGAttributes attributes) {
+        SVGNodes.set(SVGNodes.append(parent, name, attributes), geometry);
+    }
+}
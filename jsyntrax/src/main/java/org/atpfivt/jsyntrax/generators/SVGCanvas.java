@@ -1,6 +1,11 @@
 package org.atpfivt.jsyntrax.generators;
 
+import org.atpfivt.jsyntrax.generators.elements.BubbleElementBase;
 import org.atpfivt.jsyntrax.generators.elements.Element;
+import org.atpfivt.jsyntrax.generators.elements.Geometry;
+import org.atpfivt.jsyntrax.generators.elements.PaintClasses;
+import org.atpfivt.jsyntrax.generators.elements.SVGAttributes;
+import org.atpfivt.jsyntrax.generators.elements.SVGPath;
 import org.atpfivt.jsyntrax.styles.NodeStyle;
 import org.atpfivt.jsyntrax.styles.StyleConfig;
 import org.atpfivt.jsyntrax.util.StringUtils;
@@ -8,116 +13,601 @@ import org.atpfivt.jsyntrax.util.Pair;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.OptionalInt;
 
+/**
+ * @brief canvas of diagram elements organized in a tree of groups
+ * @details Every tag names a group. A group keeps its own elements in local coordinates,
+ * nested groups, an offset relative to its parent and a bounding box maintained on every change,
+ * so moving, nesting and measuring a tag take constant time.
+ * Layout is done in two passes. While the canvas is built bottom-up every unit is drawn in its own
+ * coordinates, measured by its box and placed by its offset (measure). Then arrange() assigns
+ * absolute coordinates to all elements in one top-down pass.
+ * Tags are plain int ids in order of creation, their names are built only for debugging.
+ */
 public class SVGCanvas {
+    public static final int NO_TAG = -1;
+    // elements are rendered into a buffer of about this size before it is written out
+    private static final int CHUNK_SIZE = 8192;
+    // marker drawn at the ends of lines with arrows
+    static final SVGAttributes ARROW_MARKER = SVGAttributes.of("id", "arrow", "markerWidth", 5,
+            "markerHeight", 4, "refX", 2.5, "refY", 2, "orient", "auto", "markerUnits", "strokeWidth");
+    static final String ARROW_PATH = "M0,0 L0.5,2 L0,4 L4.5,2 z";
+
     private final StyleConfig style;
-    private final HashMap<String, Integer> tagcnt = new HashMap<>();
+    private final Geometry geometry = new Geometry();
     private final ArrayList<Element> elements = new ArrayList<>();
+    // group of every element, in the same order as elements
+    private final ArrayList<Group> owners = new ArrayList<>();
+    // every group ever created, in order of creation
+    private final ArrayList<Group> groups = new ArrayList<>();
+    // all group offsets are zero, so elements are in absolute coordinates
+    private boolean arranged = true;
+    // group of every tag id, null until the group is used or after the tag is dropped
+    private final ArrayList<Group> tagged = new ArrayList<>();
+    // prefix and suffix of every tag id, for debugging
+    private final ArrayList<String> tagPrefixes = new ArrayList<>();
+    private final ArrayList<String> tagSuffixes = new ArrayList<>();
+    // page the diagram is placed on, null until the first output
+    private Page page;
 
     public SVGCanvas(StyleConfig style) {
         this.style = style;
     }
 
+    /**
+     * @return coordinates storage the elements of this canvas should be created in
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
     // default prefix = "x", default suffix = ""
-    public String newTag(String prefix, String suffix) {
-        String f = prefix + "___" + suffix;
-        Integer value = tagcnt.getOrDefault(f, 0);
-        tagcnt.put(f, value + 1);
-        return prefix + value.toString() + suffix;
+    public int newTag(String prefix, String suffix) {
+        tagged.add(null);
+        tagPrefixes.add(prefix);
+        tagSuffixes.add(suffix);
+        return tagged.size() - 1;
     }
 
+    /**
+     * @return readable name of the tag, for debugging only
+     */
+    public String getTagName(int tag) {
+        if (tag < 0 || tag >= tagged.size()) {
+            return "none";
+        }
+        return tagPrefixes.get(tag) + tag + tagSuffixes.get(tag);
+    }
+
+    /**
+     * Adds element to the group of its tag. Element coordinates are given in canvas coordinates.
+     */
     public void addElement(Element e) {
+        Group g = getOrCreateGroup(e.getTag());
+        moveElement(e, -g.getAbsoluteX(), -g.getAbsoluteY());
+        g.elements.add(e);
+        g.own.add(e);
+        g.extendBox(e);
         this.elements.add(e);
+        this.owners.add(g);
+    }
+
+    /**
+     * @return number of elements added to the canvas so far
+     */
+    public int getElementCount() {
+        return this.elements.size();
+    }
+
+    /**
+     * @brief copies elements of a laid out unit to be placed again
+     * @param tag tag of the unit, not nested into another tag yet
+     * @param firstElement index of the first element added by the unit, all later elements belong to it
+     * @return fragment with the elements in canvas coordinates or null if elements were added outside of the tag
+     */
+    public Fragment getFragment(int tag, int firstElement) {
+        Group root = getGroup(tag);
+        int n = this.elements.size() - firstElement;
+        if (root == null) {
+            return n == 0 ? new Fragment(new Element[0], new int[0]) : null;
+        }
+        if (root.parent != null) {
+            return null;
+        }
+        Element[] templates = new Element[n];
+        int[] coordinates = new int[4 * n];
+        for (int i = 0; i < n; ++i) {
+            Element e = this.elements.get(firstElement + i);
+            Group g = this.owners.get(firstElement + i);
+            int dx = 0;
+            int dy = 0;
+            while (g != root) {
+                if (g == null) {
+                    return null;
+                }
+                dx += g.dx;
+                dy += g.dy;
+                g = g.parent;
+            }
+            dx += root.dx;
+            dy += root.dy;
+            templates[i] = e;
+            coordinates[4 * i] = e.getX0() + dx;
+            coordinates[4 * i + 1] = e.getY0() + dy;
+            coordinates[4 * i + 2] = e.getX1() + dx;
+            coordinates[4 * i + 3] = e.getY1() + dy;
+        }
+        return new Fragment(templates, coordinates);
+    }
+
+    /**
+     * Adds copies of fragment elements at the same coordinates under a new tag.
+     * @return the new tag
+     */
+    public int addFragment(Fragment fragment) {
+        int tag = newTag("x", "");
+        int[] c = fragment.coordinates;
+        for (int i = 0; i < fragment.templates.length; ++i) {
+            addElement(fragment.templates[i].copy(c[4 * i], c[4 * i + 1], c[4 * i + 2], c[4 * i + 3], tag));
+        }
+        return tag;
+    }
+
+    /**
+     * @brief elements of a laid out unit, see getFragment
+     * @details Templates are only read, so a fragment may be added any number of times.
+     */
+    public static final class Fragment {
+        private final Element[] templates;
+        // x0, y0, x1, y1 of every template
+        private final int[] coordinates;
+
+        private Fragment(Element[] templates, int[] coordinates) {
+            this.templates = templates;
+            this.coordinates = coordinates;
+        }
+    }
+
+    /**
+     * Nests the group of tag into the group of addTag keeping its position on canvas.
+     */
+    public void addTagByTag(int addTag, int tag) {
+        Group child = getGroup(tag);
+        if (child == null || addTag == tag) {
+            return;
+        }
+        Group parent = getOrCreateGroup(addTag);
+        if (child.parent != null) {
+            throw new IllegalStateException("Tag " + getTagName(tag) + " is already nested into another tag");
+        }
+        for (Group g = parent; g != null; g = g.parent) {
+            if (g == child) {
+                throw new IllegalStateException("Tag " + getTagName(addTag) + " is nested into " + getTagName(tag));
+            }
+        }
+        child.dx -= parent.getAbsoluteX();
+        child.dy -= parent.getAbsoluteY();
+        child.parent = parent;
+        parent.children.add(child);
+        parent.extendBox(child);
+        this.arranged = false;
+    }
+
+    /**
+     * Forgets the tag. Its elements stay on canvas as a part of their enclosing group.
+     */
+    public void dropTag(final int tag) {
+        if (getGroup(tag) != null) {
+            this.tagged.set(tag, null);
+        }
+    }
+
+    public void moveByTag(int tag, int dx, int dy) {
+        Group g = getGroup(tag);
+        if (g != null) {
+            g.dx += dx;
+            g.dy += dy;
+            if (g.parent != null) {
+                g.parent.updateBox();
+            }
+            this.arranged = false;
+        }
+    }
+
+    /**
+     * Moves every element of the canvas.
+     */
+    public void moveAll(int dx, int dy) {
+        arrange();
+        for (Element e : this.elements) {
+            moveElement(e, dx, dy);
+        }
+        for (Group g : this.groups) {
+            g.own.move(dx, dy);
+            g.box.move(dx, dy);
+        }
+    }
+
+    public void scaleByTag(int tag, double scale) {
+        scale(getGroupsByTag(tag), scale);
+    }
+
+    /**
+     * Scales every element of the canvas.
+     */
+    public void scaleAll(double scale) {
+        scale(this.groups, scale);
+    }
+
+    private void scale(List<Group> scaled, double scale) {
+        arrange();
+        Map<Font, Font> fonts = new HashMap<>();
+        for (Group g : scaled) {
+            for (Element e : g.elements) {
+                e.scale(scale, fonts);
+            }
+        }
+        // truncation of scaled coordinates does not keep boxes, so collect them again
+        for (Group g : getGroupsBottomUp()) {
+            g.own.clear();
+            for (Element e : g.elements) {
+                g.own.add(e);
+            }
+            g.updateOwnBox();
+        }
     }
 
-    public void addTagByTag(String addTag, String tag) {
-        for (Element e : elements) {
-            if (e.isTagged(tag)) {
-                e.addTag(addTag);
+    public OptionalInt getCanvasTag() {
+        if (this.elements.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        Group g = this.owners.get(0);
+        while (g.parent != null) {
+            g = g.parent;
+        }
+        if (getGroup(g.tag) != g) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(g.tag);
+    }
+
+    public Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> getBoundingBoxByTag(int tag) {
+        Box box = new Box();
+        Group g = getGroup(tag);
+        if (g != null) {
+            box.add(g.box, g.getAbsoluteX(), g.getAbsoluteY());
+        }
+        return toPair(box);
+    }
+
+    /**
+     * @return bounding box of the whole canvas
+     */
+    public Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> getBoundingBox() {
+        Box box = new Box();
+        arrange();
+        for (Group g : this.groups) {
+            if (g.parent == null) {
+                box.add(g.box, 0, 0);
             }
         }
+        return toPair(box);
+    }
+
+    private static Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> toPair(Box box) {
+        if (box.isEmpty()) {
+            return new Pair<>(null, null);
+        }
+        return new Pair<>(new Pair<>(box.x0, box.y0), new Pair<>(box.x1, box.y1));
     }
 
-    public void dropTag(final String tag) {
-        for (Element e : elements) {
-            if (e.isTagged(tag)) {
-                e.delTag(tag);
+    /**
+     * @return the tag group and all groups nested into it
+     */
+    private List<Group> getGroupsByTag(int tag) {
+        Group root = getGroup(tag);
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        List<Group> result = new ArrayList<>();
+        ArrayDeque<Group> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Group g = stack.pop();
+            result.add(g);
+            for (Group c : g.children) {
+                stack.push(c);
             }
         }
+        return result;
     }
 
-    public void moveByTag(String tag, int dx, int dy) {
-        for (Element e : elements) {
-            if (e.isTagged(tag)) {
-                e.getStart().f += dx;
-                e.getStart().s += dy;
-                e.getEnd().f += dx;
-                e.getEnd().s += dy;
+    /**
+     * @return every group, nested groups go before their parents
+     */
+    private List<Group> getGroupsBottomUp() {
+        ArrayList<Group> result = new ArrayList<>();
+        for (Group g : this.groups) {
+            if (g.parent == null) {
+                result.add(g);
             }
         }
+        for (int i = 0; i < result.size(); ++i) {
+            result.addAll(result.get(i).children);
+        }
+        Collections.reverse(result);
+        return result;
     }
 
-    public void scaleByTag(String tag, double scale) {
-        for (Element e : elements) {
-            if (e.isTagged(tag)) {
-                e.scale(scale);
+    /**
+     * Moves every element to absolute coordinates, so all group offsets become zero.
+     * Parents are always resolved before their children, each group is visited once.
+     * Does nothing if no group was moved or nested since the last call.
+     */
+    public void arrange() {
+        if (this.arranged) {
+            return;
+        }
+        ArrayDeque<Group> chain = new ArrayDeque<>();
+        for (Group g : this.groups) {
+            g.resolved = false;
+        }
+        for (Group g : this.groups) {
+            for (Group p = g; p != null && !p.resolved; p = p.parent) {
+                chain.push(p);
+            }
+            while (!chain.isEmpty()) {
+                Group p = chain.pop();
+                p.ax = p.dx;
+                p.ay = p.dy;
+                if (p.parent != null) {
+                    p.ax += p.parent.ax;
+                    p.ay += p.parent.ay;
+                }
+                p.resolved = true;
+            }
+        }
+        for (Group g : this.groups) {
+            for (Element e : g.elements) {
+                moveElement(e, g.ax, g.ay);
             }
+            g.own.move(g.ax, g.ay);
+            g.box.move(g.ax, g.ay);
+        }
+        for (Group g : this.groups) {
+            g.dx = 0;
+            g.dy = 0;
+        }
+        this.arranged = true;
+    }
+
+    private Group getGroup(int tag) {
+        if (tag < 0 || tag >= this.tagged.size()) {
+            return null;
+        }
+        return this.tagged.get(tag);
+    }
+
+    private Group getOrCreateGroup(int tag) {
+        Group g = this.tagged.get(tag);
+        if (g == null) {
+            g = new Group(tag);
+            this.tagged.set(tag, g);
+            this.groups.add(g);
         }
+        return g;
     }
 
-    public Optional<String> getCanvasTag() {
-        return elements.stream().findAny().flatMap(Element::getAnyTag);
+    private static void moveElement(Element e, int dx, int dy) {
+        e.getGeometry().move(e.getId(), dx, dy);
     }
 
-    public Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> getBoundingBoxByTag(String tag) {
-        Pair<Integer, Integer> start = null;
-        Pair<Integer, Integer> end = null;
-        for (Element e: this.elements) {
-            if (e.isTagged(tag)) {
-                if (start == null) {
-                    start = new Pair<>(e.getStart());
-                    end = new Pair<>(e.getEnd());
+    /**
+     * @brief node of the group tree
+     */
+    private static final class Group {
+        private final int tag;
+        private Group parent;
+        // offset relative to parent group, or to canvas for top level groups
+        private int dx = 0;
+        private int dy = 0;
+        // scratch values for arrange()
+        private boolean resolved;
+        private int ax;
+        private int ay;
+        private final List<Element> elements = new ArrayList<>();
+        private final List<Group> children = new ArrayList<>();
+        // bounding box of own elements, in local coordinates
+        private final Box own = new Box();
+        // bounding box of own elements and nested groups, in local coordinates
+        private final Box box = new Box();
+
+        private Group(int tag) {
+            this.tag = tag;
+        }
+
+        private int getAbsoluteX() {
+            int x = 0;
+            for (Group g = this; g != null; g = g.parent) {
+                x += g.dx;
+            }
+            return x;
+        }
+
+        private int getAbsoluteY() {
+            int y = 0;
+            for (Group g = this; g != null; g = g.parent) {
+                y += g.dy;
+            }
+            return y;
+        }
+
+        private void extendBox(Element e) {
+            int x = 0;
+            int y = 0;
+            for (Group g = this; g != null; g = g.parent) {
+                if (!g.box.add(e, x, y)) {
+                    break;
                 }
-                start.f = Math.min(start.f, e.getStart().f);
-                start.f = Math.min(start.f, e.getEnd().f);
-                start.s = Math.min(start.s, e.getStart().s);
-                start.s = Math.min(start.s, e.getEnd().s);
+                x += g.dx;
+                y += g.dy;
+            }
+        }
 
-                end.f = Math.max(end.f, e.getStart().f);
-                end.f = Math.max(end.f, e.getEnd().f);
-                end.s = Math.max(end.s, e.getStart().s);
-                end.s = Math.max(end.s, e.getEnd().s);
+        private void extendBox(Group child) {
+            int x = child.dx;
+            int y = child.dy;
+            for (Group g = this; g != null; g = g.parent) {
+                if (!g.box.add(child.box, x, y)) {
+                    break;
+                }
+                x += g.dx;
+                y += g.dy;
+            }
+        }
+
+        /**
+         * Collects box of this group and its parents again after a nested group was moved.
+         */
+        private void updateBox() {
+            for (Group g = this; g != null; g = g.parent) {
+                g.updateOwnBox();
+            }
+        }
+
+        private void updateOwnBox() {
+            box.clear();
+            box.add(own, 0, 0);
+            for (Group c : children) {
+                box.add(c.box, c.dx, c.dy);
             }
         }
-        return new Pair<>(start, end);
+    }
+
+    /**
+     * @brief mutable bounding box
+     */
+    private static final class Box {
+        private boolean empty = true;
+        private int x0;
+        private int y0;
+        private int x1;
+        private int y1;
+
+        private boolean isEmpty() {
+            return empty;
+        }
+
+        private void clear() {
+            empty = true;
+        }
+
+        private void move(int dx, int dy) {
+            x0 += dx;
+            y0 += dy;
+            x1 += dx;
+            y1 += dy;
+        }
+
+        private boolean add(Element e) {
+            return add(e, 0, 0);
+        }
+
+        /**
+         * @return true if the box was extended
+         */
+        private boolean add(Element e, int dx, int dy) {
+            int ex0 = e.getX0();
+            int ey0 = e.getY0();
+            int ex1 = e.getX1();
+            int ey1 = e.getY1();
+            return add(Math.min(ex0, ex1) + dx, Math.min(ey0, ey1) + dy,
+                    Math.max(ex0, ex1) + dx, Math.max(ey0, ey1) + dy);
+        }
+
+        private boolean add(Box b, int dx, int dy) {
+            if (b.empty) {
+                return false;
+            }
+            return add(b.x0 + dx, b.y0 + dy, b.x1 + dx, b.y1 + dy);
+        }
+
+        private boolean add(int bx0, int by0, int bx1, int by1) {
+            if (empty) {
+                empty = false;
+                x0 = bx0;
+                y0 = by0;
+                x1 = bx1;
+                y1 = by1;
+                return true;
+            }
+            if (bx0 >= x0 && by0 >= y0 && bx1 <= x1 && by1 <= y1) {
+                return false;
+            }
+            x0 = Math.min(x0, bx0);
+            y0 = Math.min(y0, by0);
+            x1 = Math.max(x1, bx1);
+            y1 = Math.max(y1, by1);
+            return true;
+        }
     }
 
     public String generateSVG() {
         StringBuilder sb = new StringBuilder();
-        double scale = style.getScale();
-
-        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> res = getBoundingBoxByTag("all");
+        try {
+            generateSVG(sb, null);
+        } catch (IOException e) {
+            // nothing is written without a writer
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
 
-        // move to picture to (0, 0)
-        moveByTag("all", -res.f.f, -res.f.s);
-        scaleByTag("all", scale);
-        moveByTag("all", style.getPadding(), style.getPadding());
+    /**
+     * @brief writes the document to the writer in chunks, without keeping it in memory
+     */
+    public void generateSVG(Writer out) throws IOException {
+        generateSVG(new StringBuilder(2 * CHUNK_SIZE), out);
+        out.flush();
+    }
 
-        res = getBoundingBoxByTag("all");
-        Pair<Integer, Integer> end = res.s;
+    /**
+     * @brief writes the document to the stream as UTF-8, the stream is left open
+     */
+    public void generateSVG(OutputStream out) throws IOException {
+        generateSVG(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
 
-        int w = end.f + style.getPadding();
-        int h = end.s + style.getPadding();
+    /**
+     * @param out writer to flush sb to when it is full, or null to keep the whole document in sb
+     */
+    private void generateSVG(StringBuilder sb, Writer out) throws IOException {
+        Page page = layout();
+        int w = page.width;
+        int h = page.height;
+        String viewBox = style.isViewBoxScale() ? page.getViewBox() : null;
+        // scale of coordinates and fonts written to the document
+        double elementScale = page.elementScale;
 
-        // collect fonts
-        HashMap<String, Pair<Font, Color>> fonts = new HashMap<>();
-        fonts.put("title_font", new Pair<>(this.style.getTitleFont(), this.style.getTextColor()));
-        for (NodeStyle ns : this.style.getNodeStyles()) {
-            fonts.put(ns.getName() + "_font", new Pair<>(ns.getFont(), ns.getTextColor()));
+        // classes and shadow filters are collected first, the CSS and defs precede the elements
+        PaintClasses paints = new PaintClasses(style.isCompact(), style.isShadowFilter());
+        SVGElementWriter writer = new SVGElementWriter(style, paints);
+        SymbolTable symbols = style.isSymbols() ? new SymbolTable(elements, writer) : null;
+        if (paints.isCompact() || paints.isShadowFilter()) {
+            collectPaints(writer, paints, symbols);
         }
 
         // header
@@ -127,16 +617,52 @@ public class SVGCanvas {
         sb.append("xmlns:xlink=\"http://www.w3.org/1999/xlink\"\n");
         sb.append("xml:space=\"preserve\"\n");
         sb.append("width=\"").append(w).append("\" ")
-                .append("height=\"").append(h).append("\" ")
-                .append("version=\"1.1\">\n");
+                .append("height=\"").append(h).append("\" ");
+        if (viewBox != null) {
+            sb.append("viewBox=\"").append(viewBox).append("\" ");
+        }
+        sb.append("version=\"1.1\">\n");
         // styles
         sb.append("<style type=\"text/css\">\n");
         sb.append("<![CDATA[\n");
+        writeCSS(sb, elementScale, paints);
+        // close
+        sb.append("]]>\n</style>\n");
+        // defs
+        sb.append("<defs>\n");
+        sb.append("<marker ");
+        ARROW_MARKER.toSVG(sb);
+        sb.append(">\n");
+        String hex = StringUtils.toHex(this.style.getLineColor());
+        sb.append("<path d=\"").append(ARROW_PATH).append("\" fill=\"").append(hex).append("\" />\n");
+        sb.append("</marker>\n");
+        paints.toDefs(sb, style.getShadowFill());
+        if (symbols != null) {
+            symbols.toDefs(sb);
+        }
+        sb.append("</defs>\n");
+
+        // elements
+        if (!style.isTransparent()) {
+            sb.append("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+        }
+        writeElements(sb, out, writer, paints, symbols);
+        // end
+        sb.append("</svg>\n");
+        if (out != null) {
+            flush(sb, out);
+        }
+    }
+
+    /**
+     * @brief writes CSS rules of fonts, links and paint classes
+     */
+    void writeCSS(StringBuilder sb, double elementScale, PaintClasses paints) {
         // fonts
-        for (Map.Entry<String, Pair<Font, Color>> fontPair : fonts.entrySet()) {
+        for (Map.Entry<String, Pair<Font, Color>> fontPair : getFonts().entrySet()) {
             String fontName = fontPair.getKey();
             String fontFamily = fontPair.getValue().f.getName();
-            String fontSize = Integer.toString((int) (fontPair.getValue().f.getSize() * scale));
+            String fontSize = Integer.toString((int) (fontPair.getValue().f.getSize() * elementScale));
             String fontWeight = "normal";
             if ((fontPair.getValue().f.getStyle() & Font.BOLD) == Font.BOLD) {
                 fontWeight = "bold";
@@ -178,29 +704,171 @@ public class SVGCanvas {
         sb.append(".link {fill: #0D47A1;}\n");
         sb.append(".link:hover {fill: #0D47A1; text-decoration:underline;}\n");
         sb.append(".link:visited {fill: #4A148C;}\n");
-        // close
-        sb.append("]]>\n</style>\n");
-        // defs
-        sb.append("<defs>\n");
-        sb.append("<marker id=\"arrow\" markerWidth=\"5\" markerHeight=\"4\" ")
-                .append("refX=\"2.5\" refY=\"2\" orient=\"auto\" markerUnits=\"strokeWidth\">\n");
-        String hex = StringUtils.toHex(this.style.getLineColor());
-        sb.append("<path d=\"M0,0 L0.5,2 L0,4 L4.5,2 z\" fill=\"").append(hex).append("\" />\n");
-        sb.append("</marker>\n</defs>\n");
+        paints.toCSS(sb);
+    }
 
-        // elements
-        if (!style.isTransparent()) {
-            sb.append("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+    /**
+     * @brief places the diagram on the page once, see Page
+     * @details Elements are moved and scaled to page coordinates unless the page is scaled by its viewBox.
+     * Every output of the canvas is drawn on the page placed by the first one.
+     */
+    Page layout() {
+        if (this.page != null) {
+            return this.page;
         }
+        Page page = new Page();
+        double scale = style.getScale();
+        page.scale = scale;
+
+        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> res = getBoundingBox();
+        if (style.isViewBoxScale()) {
+            // elements stay in layout coordinates, the viewer scales them
+            double padding = style.getPadding() / scale;
+            page.width = (int) Math.ceil((res.s.f - res.f.f) * scale) + 2 * style.getPadding();
+            page.height = (int) Math.ceil((res.s.s - res.f.s) * scale) + 2 * style.getPadding();
+            page.x = res.f.f - padding;
+            page.y = res.f.s - padding;
+            page.elementScale = 1;
+        } else {
+            // move to picture to (0, 0)
+            moveAll(-res.f.f, -res.f.s);
+            scaleAll(scale);
+            moveAll(style.getPadding(), style.getPadding());
+
+            res = getBoundingBox();
+            Pair<Integer, Integer> end = res.s;
+
+            page.width = end.f + style.getPadding();
+            page.height = end.s + style.getPadding();
+            page.elementScale = scale;
+        }
+        this.page = page;
+        return page;
+    }
+
+    /**
+     * @brief size of the image and placement of elements on it
+     */
+    static final class Page {
+        private int width;
+        private int height;
+        // scale of the viewBox and its top left corner in element coordinates
+        private double scale;
+        private double x;
+        private double y;
+        // scale elements and fonts were drawn in
+        private double elementScale;
+
+        int getWidth() {
+            return width;
+        }
+
+        int getHeight() {
+            return height;
+        }
+
+        double getScale() {
+            return scale;
+        }
+
+        double getX() {
+            return x;
+        }
+
+        double getY() {
+            return y;
+        }
+
+        double getElementScale() {
+            return elementScale;
+        }
+
+        /**
+         * @return viewBox attribute scaling the page, used only if the style scales by viewBox
+         */
+        String getViewBox() {
+            return StringUtils.formatNumber(x) + " " + StringUtils.formatNumber(y)
+                    + " " + StringUtils.formatNumber(width / scale) + " " + StringUtils.formatNumber(height / scale);
+        }
+    }
+
+    StyleConfig getStyle() {
+        return style;
+    }
+
+    /**
+     * @return all elements in order of drawing
+     */
+    List<Element> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * @return fonts and text colors by font class name
+     */
+    Map<String, Pair<Font, Color>> getFonts() {
+        HashMap<String, Pair<Font, Color>> fonts = new HashMap<>();
+        fonts.put("title_font", new Pair<>(this.style.getTitleFont(), this.style.getTextColor()));
+        for (NodeStyle ns : this.style.getNodeStyles()) {
+            fonts.put(ns.getName() + "_font", new Pair<>(ns.getFont(), ns.getTextColor()));
+        }
+        return fonts;
+    }
+
+    /**
+     * @brief registers the classes and filters of all elements in paints
+     * @details The elements are drawn as they will be written, and the drawing is thrown away.
+     * Without classes only the nodes are drawn, to know the outline widths of their shadow filters.
+     */
+    private void collectPaints(SVGElementWriter writer, PaintClasses paints, SymbolTable symbols)
+            throws IOException {
+        if (paints.isCompact()) {
+            writeElements(new StringBuilder(2 * CHUNK_SIZE), Writer.nullWriter(), writer, paints, symbols);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
         for (Element e : this.elements) {
+            if (e instanceof BubbleElementBase) {
+                writer.toSVG(sb, e);
+                sb.setLength(0);
+            }
+        }
+    }
 
-            if (style.isShadow()) {
-                e.addShadow(sb,  this.style);
+    /**
+     * @param out writer to flush sb to when it is full, or null to keep all elements in sb
+     * @param symbols repeated nodes to place with use, or null to draw every node
+     */
+    private void writeElements(StringBuilder sb, Writer out, SVGElementWriter writer, PaintClasses paints,
+                               SymbolTable symbols) throws IOException {
+        // consecutive lines are merged into paths in compact mode
+        SVGPath path = paints.isCompact() ? new SVGPath(sb, paints) : null;
+        for (int i = 0; i < this.elements.size(); ++i) {
+            Element e = this.elements.get(i);
+            if (path != null) {
+                if (writer.addToPath(path, e)) {
+                    continue;
+                }
+                path.close();
+            }
+            if (symbols != null && symbols.toUse(sb, i, e)) {
+                continue;
+            }
+            if (style.isShadow() && !paints.isShadowFilter()) {
+                writer.addShadow(sb, e);
+            }
+            writer.toSVG(sb, e);
+            if (out != null && sb.length() >= CHUNK_SIZE) {
+                flush(sb, out);
             }
-            e.toSVG(sb, this.style);
         }
-        // end
-        sb.append("</svg>\n");
-        return sb.toString();
+        if (path != null) {
+            path.close();
+        }
+    }
+
+    private static void flush(StringBuilder sb, Writer out) throws IOException {
+        out.append(sb);
+        sb.setLength(0);
     }
 }
@@ -1,17 +1,21 @@
 package org.atpfivt.jsyntrax.generators;
 
 import org.atpfivt.jsyntrax.Configuration;
+import org.atpfivt.jsyntrax.Limits;
 import org.atpfivt.jsyntrax.generators.elements.ArcElement;
 import org.atpfivt.jsyntrax.generators.elements.BoxBubbleElement;
 import org.atpfivt.jsyntrax.generators.elements.BubbleElement;
 import org.atpfivt.jsyntrax.generators.elements.BubbleElementBase;
 import org.atpfivt.jsyntrax.generators.elements.Element;
+import org.atpfivt.jsyntrax.generators.elements.Geometry;
 import org.atpfivt.jsyntrax.generators.elements.HexBubbleElement;
 import org.atpfivt.jsyntrax.generators.elements.LineElement;
 import org.atpfivt.jsyntrax.generators.elements.OvalElement;
 import org.atpfivt.jsyntrax.generators.elements.TitleElement;
+import org.atpfivt.jsyntrax.generators.metrics.TableFontMetrics;
 import org.atpfivt.jsyntrax.styles.NodeStyle;
 import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.styles.TextMetrics;
 import org.atpfivt.jsyntrax.units.Unit;
 import org.atpfivt.jsyntrax.units.nodes.Bullet;
 import org.atpfivt.jsyntrax.units.nodes.Node;
@@ -30,9 +34,8 @@ import org.atpfivt.jsyntrax.visitors.Visitor;
 
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.font.FontRenderContext;
-import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -40,11 +43,25 @@ import java.util.Map;
 
 /**
  * @brief class for building canvas by Unit
+ * @details Visiting a unit is the measure pass: the unit is drawn around its entry point in its own tag,
+ * and enclosing units place it by its bounding box and exit point only moving the tag.
+ * The canvas is arranged into absolute coordinates once, after the whole diagram is measured.
  */
 public final class SVGCanvasBuilder implements Visitor {
+    private static final int TEXT_SIZE_CACHE_CAPACITY = 4096;
+    private static final TextSizeCache TEXT_SIZES = new TextSizeCache(TEXT_SIZE_CACHE_CAPACITY);
+
     private Map<String, String> urlMap;
     private StyleConfig style;
     private SVGCanvas canvas;
+    private Geometry geometry;
+    // tracks being laid out, the innermost on top
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private boolean layoutMemo = true;
+    private Limits limits = Limits.NONE;
+    private long deadline = Limits.NO_DEADLINE;
+    // layouts of repeated tracks, null if disabled
+    private LayoutMemo memo;
 
     public SVGCanvasBuilder() throws IOException {
         this.style = new StyleConfig(1, false);
@@ -61,24 +78,55 @@ public final class SVGCanvasBuilder implements Visitor {
         return this;
     }
 
+    /**
+     * @param layoutMemo lay out repeated tracks once and copy them, true by default
+     */
+    public SVGCanvasBuilder withLayoutMemo(boolean layoutMemo) {
+        this.layoutMemo = layoutMemo;
+        return this;
+    }
+
+    /**
+     * @param limits limits of units and depth of diagrams and of the time of their layout
+     */
+    public SVGCanvasBuilder withLimits(Limits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * @throws org.atpfivt.jsyntrax.exceptions.LimitExceededException the diagram is out of the limits
+     */
     public SVGCanvas generateSVG(Unit root) {
+        if (root != null) {
+            // units are counted as laid out, so a diagram over the limits is rejected before its layout
+            limits.checkUnit(root);
+        }
+        this.deadline = limits.getDeadline();
         this.canvas = new SVGCanvas(this.style);
-        parseDiagram(new Line(
+        this.geometry = this.canvas.getGeometry();
+        this.frames.clear();
+        Line diagram = new Line(
                 new ArrayList<>(List.of(new Bullet(), root, new Bullet()))
-        ), true);
+        );
+        this.memo = layoutMemo ? new LayoutMemo(diagram) : null;
+        parseDiagram(diagram, true);
+        this.memo = null;
 
         if (title == null) {
+            canvas.arrange();
             return canvas;
         }
 
-        String tag = canvas.getCanvasTag().orElse(null);
+        int tag = canvas.getCanvasTag().orElse(SVGCanvas.NO_TAG);
         Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> bbox =
                 canvas.getBoundingBoxByTag(tag);
 
-        String titleTag = canvas.newTag("x", "-title");
+        int titleTag = canvas.newTag("x", "-title");
         Element e = new TitleElement(
+                this.geometry,
+                measureText(title, style.getTitleFont()),
                 title,
-                style.getTitleFont(),
                 "title_font",
                 titleTag
         );
@@ -93,13 +141,13 @@ public final class SVGCanvasBuilder implements Visitor {
             case bm:
             case tm:
                 canvas.moveByTag(titleTag,
-                        (bbox.f.f + bbox.s.f - e.getEnd().f) / 2
+                        (bbox.f.f + bbox.s.f - e.getX1()) / 2
                                 - 2 * style.getPadding(), 0);
                 break;
             case br:
             case tr:
                 canvas.moveByTag(titleTag,
-                        bbox.s.f - e.getEnd().f - 2 * style.getPadding(), 0);
+                        bbox.s.f - e.getX1() - 2 * style.getPadding(), 0);
                 break;
         }
 
@@ -108,7 +156,7 @@ public final class SVGCanvasBuilder implements Visitor {
             case tl:
             case tm:
             case tr:
-                canvas.moveByTag(tag, 0, e.getEnd().s + 2 * style.getPadding());
+                canvas.moveByTag(tag, 0, e.getY1() + 2 * style.getPadding());
                 break;
             case bl:
             case bm:
@@ -116,46 +164,143 @@ public final class SVGCanvasBuilder implements Visitor {
                 canvas.moveByTag(titleTag, 0, bbox.s.s + 2 * style.getPadding());
                 break;
         }
+        canvas.arrange();
         return canvas;
     }
 
     /**
-     * @return tag of built Unit
+     * Lays out the unit, its result is set to unitEndPoint.
+     * A track is only started here, inside the layout of another track it is finished later.
+     * A repeated track is copied from its first layout in the same direction.
      */
     private void parseDiagram(Unit unit, boolean ltor) {
         if (null == unit) {
             setUnitEndPoint(null);
             return;
         }
+        limits.checkTime(deadline);
 
         setLtor(ltor);
+        int key = memo == null ? LayoutMemo.NONE : memo.key(unit, ltor);
+        if (key == LayoutMemo.NONE) {
+            unit.accept(this);
+            return;
+        }
+        LayoutMemo.Entry entry = memo.get(key);
+        if (entry != null) {
+            copyLayout(entry);
+            return;
+        }
+        int firstElement = canvas.getElementCount();
+        int depth = frames.size();
         unit.accept(this);
+        if (frames.size() == depth) {
+            memorizeLayout(key, firstElement);
+        } else if (frames.peek().memoKey == LayoutMemo.NONE) {
+            // the track is laid out by its frame
+            frames.peek().memoKey = key;
+            frames.peek().firstElement = firstElement;
+        }
+    }
+
+    private void memorizeLayout(int key, int firstElement) {
+        UnitEndPoint endPoint = getUnitEndPoint();
+        Integer indentAfter = memo.hasStack(key) ? getIndent() : null;
+        if (endPoint == null) {
+            memo.put(key, new LayoutMemo.Entry(null, null, indentAfter));
+            return;
+        }
+        SVGCanvas.Fragment fragment = canvas.getFragment(endPoint.tag, firstElement);
+        if (fragment != null) {
+            memo.put(key, new LayoutMemo.Entry(fragment,
+                    new Pair<>(endPoint.endpoint.f, endPoint.endpoint.s), indentAfter));
+        }
+    }
+
+    private void copyLayout(LayoutMemo.Entry entry) {
+        if (entry.getIndent() != null) {
+            setIndent(entry.getIndent());
+        }
+        if (entry.getEndpoint() == null) {
+            setUnitEndPoint(null);
+            return;
+        }
+        int tag = canvas.addFragment(entry.getFragment());
+        setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(entry.getEndpoint().f, entry.getEndpoint().s)));
+    }
+
+    /**
+     * Starts layout of a track. Nested tracks are laid out by the loop of the outermost one
+     * instead of recursion, so the depth of a diagram is limited by heap only.
+     */
+    private void start(Frame frame) {
+        boolean outermost = this.frames.isEmpty();
+        this.frames.push(frame);
+        if (outermost) {
+            while (!this.frames.isEmpty()) {
+                this.frames.peek().resume();
+            }
+        }
+    }
+
+    private void finish(UnitEndPoint endPoint) {
+        Frame frame = this.frames.pop();
+        setUnitEndPoint(endPoint);
+        if (frame.memoKey != LayoutMemo.NONE) {
+            memorizeLayout(frame.memoKey, frame.firstElement);
+        }
     }
 
     /**
-     * @return tag of built Unit
+     * @brief suspended layout of a track
+     * @details A frame requests its units one by one with parseDiagram and returns.
+     * It is resumed with the result of the unit when the unit is laid out.
      */
-    private UnitEndPoint getDiagramParseResult(Unit unit, boolean ltor) {
-        parseDiagram(unit, ltor);
-        return getUnitEndPoint();
+    private abstract class Frame {
+        private boolean started = false;
+        // layout of the track is memorized when it is finished
+        private int memoKey = LayoutMemo.NONE;
+        private int firstElement;
+
+        final void resume() {
+            if (started) {
+                next(getUnitEndPoint());
+            } else {
+                started = true;
+                begin();
+            }
+        }
+
+        /**
+         * Lays out the track up to its first unit.
+         */
+        abstract void begin();
+
+        /**
+         * Places the last requested unit and continues up to the next one.
+         */
+        abstract void next(UnitEndPoint endPoint);
     }
 
     @Override
     public void visitNoneNode(NoneNode unit) {
-        String tag = this.canvas.newTag("x", "");
+        int tag = this.canvas.newTag("x", "");
 
-        Element e = new LineElement(new Pair<>(0, 0), new Pair<>(1, 0),
+        Element e = new LineElement(this.geometry, 0, 0, 1, 0,
                 null, this.style.getOutlineWidth(), tag);
-        e.setStart(new Pair<>(0, 0));
-        e.setEnd(new Pair<>(1, 0));
         this.canvas.addElement(e);
 
-        setUnitEndPoint(new UnitEndPoint(tag, e.getEnd()));
+        // the end is where the line is drawn now, later moves of the tag move it as they move the line
+        setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(e.getX1(), e.getY1())));
     }
 
     @Override
     public void visitConfiguration(Configuration unit) {
         urlMap = unit.getUrlMap();
+        if (memo != null) {
+            // links are a part of memorized nodes
+            memo.clear();
+        }
         unit.getTrack().accept(this);
     }
 
@@ -172,7 +317,7 @@ public final class SVGCanvasBuilder implements Visitor {
         Color fill = ns.getFill();
         Color textColor = ns.getTextColor();
 
-        Pair<Integer, Integer> textSize = getTextSize(txt, font);
+        Pair<Integer, Integer> textSize = measureText(txt, font);
         int x0 = -textSize.f / 2;
         int y0 = -textSize.s / 2;
         int x1 = x0 + textSize.f;
@@ -198,40 +343,40 @@ public final class SVGCanvasBuilder implements Visitor {
             rgt = lft;
         }
 
-        String tag = this.canvas.newTag("x", "-box");
-        Pair<Integer, Integer> start;
-        Pair<Integer, Integer> end;
+        int tag = this.canvas.newTag("x", "-box");
+        int bx0;
+        int bx1;
 
         BubbleElementBase b;
         String href = this.urlMap.get(txt);
         switch (ns.getShape()) {
             case "bubble":
-                start = new Pair<>(lft - rad, top);
-                end = new Pair<>(rgt + rad, y1);
-                b = new BubbleElement(start, end, href,
-                        txt, new Pair<>(x0, y0), font,
+                bx0 = lft - rad;
+                bx1 = rgt + rad;
+                b = new BubbleElement(this.geometry, this.geometry.add(bx0, top, bx1, y1), href,
+                        txt, y0, font,
                         fontName, textColor, this.style.getOutlineWidth(), fill, tag);
                 break;
             case "hex":
-                start = new Pair<>(lft - rad, top);
-                end = new Pair<>(rgt + rad, y1);
-                b = new HexBubbleElement(start, end, href,
-                        txt, new Pair<>(x0, y0), font,
+                bx0 = lft - rad;
+                bx1 = rgt + rad;
+                b = new HexBubbleElement(this.geometry, this.geometry.add(bx0, top, bx1, y1), href,
+                        txt, y0, font,
                         fontName, textColor, this.style.getOutlineWidth(), fill, tag);
                 break;
             default: {
-                start = new Pair<>(lft, top);
-                end = new Pair<>(rgt, y1);
-                b = new BoxBubbleElement(start, end, href,
-                        txt, new Pair<>(x0, y0), font,
+                bx0 = lft;
+                bx1 = rgt;
+                b = new BoxBubbleElement(this.geometry, this.geometry.add(bx0, top, bx1, y1), href,
+                        txt, y0, font,
                         fontName, textColor, this.style.getOutlineWidth(), fill, tag);
                 break;
             }
         }
         this.canvas.addElement(b);
 
-        x0 = start.f;
-        x1 = end.f;
+        x0 = bx0;
+        x1 = bx1;
         int width = x1 - x0;
         this.canvas.moveByTag(tag, -x0, 2);
         setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(width, 0)));
@@ -239,11 +384,11 @@ public final class SVGCanvasBuilder implements Visitor {
 
     @Override
     public void visitBullet(Bullet unit) {
-        String tag = this.canvas.newTag("x", "");
+        int tag = this.canvas.newTag("x", "");
         int w = this.style.getOutlineWidth();
         int r = w + 1;
         this.canvas.addElement(
-                new OvalElement(new Pair<>(0, -r), new Pair<>(2 * r, r),
+                new OvalElement(this.geometry, 0, -r, 2 * r, r,
                         w, this.style.getBulletFill(), tag));
 
         setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(2 * r, 0)));
@@ -251,37 +396,73 @@ public final class SVGCanvasBuilder implements Visitor {
 
     @Override
     public void visitLine(Line line) {
-        boolean ltor = getLtor();
-        String tag = this.canvas.newTag("x", "");
+        start(new LineFrame(line));
+    }
+
+    /**
+     * @brief layout of Line, units are placed one after another
+     */
+    private final class LineFrame extends Frame {
+        private final Line line;
+        private boolean ltor;
+        private int tag;
+        private int sep;
+        private int width;
+        private Pair<Integer, Integer> pos;
+        private int unitNum;
+        private int unitStep;
+        private int size;
+
+        private LineFrame(Line line) {
+            this.line = line;
+        }
 
-        int sep = this.style.getHSep();
-        int width = this.style.getLineWidth();
-        Pair<Integer, Integer> pos = new Pair<>(0, 0);
+        @Override
+        void begin() {
+            ltor = getLtor();
+            tag = canvas.newTag("x", "");
 
-        int unitNum = 0;
-        int unitStep = 1;
-        int size = line.getUnits().size();
+            sep = style.getHSep();
+            width = style.getLineWidth();
+            pos = new Pair<>(0, 0);
 
-        if (!ltor) {
-            unitNum = size - 1;
-            unitStep = -1;
+            unitNum = 0;
+            unitStep = 1;
+            size = line.getUnits().size();
+
+            if (!ltor) {
+                unitNum = size - 1;
+                unitStep = -1;
+            }
+            parseUnit();
         }
 
-        for (; 0 <= unitNum && unitNum < size; unitNum += unitStep) {
-            Unit unit = line.getUnits().get(unitNum);
-            UnitEndPoint endPoint = this.getDiagramParseResult(unit, ltor);
-            if (endPoint == null) {
-                continue;
+        @Override
+        void next(UnitEndPoint endPoint) {
+            if (endPoint != null) {
+                place(endPoint);
             }
+            unitNum += unitStep;
+            parseUnit();
+        }
+
+        private void parseUnit() {
+            if (0 <= unitNum && unitNum < size) {
+                parseDiagram(line.getUnits().get(unitNum), ltor);
+            } else {
+                end();
+            }
+        }
 
+        private void place(UnitEndPoint endPoint) {
             if (pos.f != 0) {
                 // has element before
                 int xn = pos.f + sep;
-                this.canvas.moveByTag(endPoint.tag, xn, pos.s);
+                canvas.moveByTag(endPoint.tag, xn, pos.s);
                 // create line from previous to this
-                LineElement l = new LineElement(new Pair<>(pos.f - 1, pos.s), new Pair<>(xn, pos.s),
+                LineElement l = new LineElement(geometry, pos.f - 1, pos.s, xn, pos.s,
                         ltor ? "last" : "first", width, tag);
-                this.canvas.addElement(l);
+                canvas.addElement(l);
                 pos.f = xn + endPoint.endpoint.f;
             } else {
                 // first element on the line
@@ -290,327 +471,445 @@ public final class SVGCanvasBuilder implements Visitor {
             pos.s = endPoint.endpoint.s;
 
             // tag this unit
-            this.canvas.addTagByTag(tag, endPoint.tag);
+            canvas.addTagByTag(tag, endPoint.tag);
             // delete old tag
-            this.canvas.dropTag(endPoint.tag);
+            canvas.dropTag(endPoint.tag);
         }
 
-        if (pos.f == 0) {
-            // line is empty
-            pos.f = sep * 2;
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(0, 0), new Pair<>(sep, 0),
-                            null, width, tag));
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(sep, 0), new Pair<>(pos.f, 0),
-                            "last", width, tag));
-            pos.f = sep;
-        }
+        private void end() {
+            if (pos.f == 0) {
+                // line is empty
+                pos.f = sep * 2;
+                canvas.addElement(
+                        new LineElement(geometry, 0, 0, sep, 0,
+                                null, width, tag));
+                canvas.addElement(
+                        new LineElement(geometry, sep, 0, pos.f, 0,
+                                "last", width, tag));
+                pos.f = sep;
+            }
 
-        setUnitEndPoint(new UnitEndPoint(tag, pos));
+            finish(new UnitEndPoint(tag, pos));
+        }
     }
 
     @Override
     public void visitToploop(Toploop loop) {
-        boolean ltor = getLtor();
-        String tag = this.canvas.newTag("x", "");
-
-        int sep = this.style.getVSep();
-        int vsep = sep / 2;
-
-        // parse forward
-        UnitEndPoint fEndPoint = getDiagramParseResult(loop.getForwardPart(), ltor);
-        String ft = fEndPoint.tag;
-        int fexx = fEndPoint.endpoint.f;
-        int fexy = fEndPoint.endpoint.s;
-        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> fBox = this.canvas.getBoundingBoxByTag(ft);
-        int fx0 = fBox.f.f;
-        int fy0 = fBox.f.s;
-        int fx1 = fBox.s.f;
-
-        // parse backward
-        UnitEndPoint bEndPoint = getDiagramParseResult(loop.getBackwardPart(), !ltor);
-        String bt = bEndPoint.tag;
-        int bexx = bEndPoint.endpoint.f;
-        int bexy = bEndPoint.endpoint.s;
-        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> bBox = this.canvas.getBoundingBoxByTag(bt);
-        int bx0 = bBox.f.f;
-        int bx1 = bBox.s.f;
-        int by1 = bBox.s.s;
-
-        // move processes
-        int fw = fx1 - fx0;
-        int bw = bx1 - bx0;
-        int dy = -(by1 - fy0 + vsep);
-        this.canvas.moveByTag(bt, 0, dy);
-        bexy += dy;
-        int mxx;
-
-        int dx = Math.abs(fw - bw) / 2;
-
-        if (fw > bw) {
-            this.canvas.moveByTag(bt, dx, 0);
-            bexx += dx;
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(0, dy), new Pair<>(dx, dy),
-                            null, this.style.getLineWidth(), bt));
-            this.canvas.addElement(
-                    new LineElement(
-                            new Pair<>(bexx, bexy),
-                            new Pair<>(fx1, bexy),
-                            ltor || dx < 2 * vsep ? null : "first",
-                            this.style.getLineWidth(), bt));
-            mxx = fexx;
-        } else if (bw > fw) {
-            this.canvas.moveByTag(ft, dx, 0);
-            fexx += dx;
-            this.canvas.addElement(
-                    new LineElement(
-                            new Pair<>(0, 0),
-                            new Pair<>(dx, fexy),
-                            null, this.style.getLineWidth(), ft));
-            this.canvas.addElement(
-                    new LineElement(
-                            new Pair<>(fexx, fexy),
-                            new Pair<>(bx1, fexy),
-                            null, this.style.getLineWidth(), ft));
-            mxx = bexx;
-        } else {
-            mxx = fexx;
+        start(new ToploopFrame(loop));
+    }
+
+    /**
+     * @brief layout of Toploop, backward part is placed above forward part
+     */
+    private final class ToploopFrame extends Frame {
+        private final Toploop loop;
+        private boolean ltor;
+        private int tag;
+        private int sep;
+        private int vsep;
+        private boolean forwardDone = false;
+        private int ft;
+        private int fexx;
+        private int fexy;
+        private int fx0;
+        private int fy0;
+        private int fx1;
+
+        private ToploopFrame(Toploop loop) {
+            this.loop = loop;
         }
 
-        // Retag
-        this.canvas.addTagByTag(tag, bt);
-        this.canvas.addTagByTag(tag, ft);
-        this.canvas.dropTag(bt);
-        this.canvas.dropTag(ft);
+        @Override
+        void begin() {
+            ltor = getLtor();
+            tag = canvas.newTag("x", "");
 
-        // move for left turnback
-        this.canvas.moveByTag(tag, sep, 0);
-        mxx += sep;
-        this.canvas.addElement(
-                new LineElement(new Pair<>(0, 0), new Pair<>(sep, 0),
-                        null, this.style.getLineWidth(), tag));
+            sep = style.getVSep();
+            vsep = sep / 2;
+
+            // parse forward
+            parseDiagram(loop.getForwardPart(), ltor);
+        }
+
+        @Override
+        void next(UnitEndPoint endPoint) {
+            if (!forwardDone) {
+                forwardDone = true;
+                measureForward(endPoint);
+                // parse backward
+                parseDiagram(loop.getBackwardPart(), !ltor);
+            } else {
+                place(endPoint);
+            }
+        }
 
-        drawLeftTurnBack(tag, sep, 0, dy, ltor ? "up" : "down");
-        drawRightTurnBack(tag, mxx, fexy, bexy, ltor ? "down" : "up");
+        private void measureForward(UnitEndPoint fEndPoint) {
+            ft = fEndPoint.tag;
+            fexx = fEndPoint.endpoint.f;
+            fexy = fEndPoint.endpoint.s;
+            Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> fBox = canvas.getBoundingBoxByTag(ft);
+            fx0 = fBox.f.f;
+            fy0 = fBox.f.s;
+            fx1 = fBox.s.f;
+        }
 
-        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box = this.canvas.getBoundingBoxByTag(tag);
-        int x1 = box.s.f;
+        private void place(UnitEndPoint bEndPoint) {
+            int bt = bEndPoint.tag;
+            int bexx = bEndPoint.endpoint.f;
+            int bexy = bEndPoint.endpoint.s;
+            Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> bBox = canvas.getBoundingBoxByTag(bt);
+            int bx0 = bBox.f.f;
+            int bx1 = bBox.s.f;
+            int by1 = bBox.s.s;
+
+            // move processes
+            int fw = fx1 - fx0;
+            int bw = bx1 - bx0;
+            int dy = -(by1 - fy0 + vsep);
+            canvas.moveByTag(bt, 0, dy);
+            bexy += dy;
+            int mxx;
+
+            int dx = Math.abs(fw - bw) / 2;
+
+            if (fw > bw) {
+                canvas.moveByTag(bt, dx, 0);
+                bexx += dx;
+                canvas.addElement(
+                        new LineElement(geometry, 0, dy, dx, dy,
+                                null, style.getLineWidth(), bt));
+                canvas.addElement(
+                        new LineElement(
+                                geometry, bexx, bexy,
+                                fx1, bexy,
+                                ltor || dx < 2 * vsep ? null : "first",
+                                style.getLineWidth(), bt));
+                mxx = fexx;
+            } else if (bw > fw) {
+                canvas.moveByTag(ft, dx, 0);
+                fexx += dx;
+                canvas.addElement(
+                        new LineElement(
+                                geometry, 0, 0,
+                                dx, fexy,
+                                null, style.getLineWidth(), ft));
+                canvas.addElement(
+                        new LineElement(
+                                geometry, fexx, fexy,
+                                bx1, fexy,
+                                null, style.getLineWidth(), ft));
+                mxx = bexx;
+            } else {
+                mxx = fexx;
+            }
 
-        this.canvas.addElement(
-                new LineElement(new Pair<>(mxx, fexy), new Pair<>(x1, fexy),
-                        null, this.style.getLineWidth(), tag));
+            // Retag
+            canvas.addTagByTag(tag, bt);
+            canvas.addTagByTag(tag, ft);
+            canvas.dropTag(bt);
+            canvas.dropTag(ft);
+
+            // move for left turnback
+            canvas.moveByTag(tag, sep, 0);
+            mxx += sep;
+            canvas.addElement(
+                    new LineElement(geometry, 0, 0, sep, 0,
+                            null, style.getLineWidth(), tag));
+
+            drawLeftTurnBack(tag, sep, 0, dy, ltor ? "up" : "down");
+            drawRightTurnBack(tag, mxx, fexy, bexy, ltor ? "down" : "up");
 
-        setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(x1, fexy)));
+            Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box = canvas.getBoundingBoxByTag(tag);
+            int x1 = box.s.f;
+
+            canvas.addElement(
+                    new LineElement(geometry, mxx, fexy, x1, fexy,
+                            null, style.getLineWidth(), tag));
+
+            finish(new UnitEndPoint(tag, new Pair<>(x1, fexy)));
+        }
     }
 
     @Override
     public void visitLoop(Loop loop) {
-        boolean ltor = getLtor();
-        String tag = this.canvas.newTag("x", "");
-        int sep = this.style.getVSep();
-        int vsep = sep / 2;
-
-        // parse forward
-        UnitEndPoint fEndPoint = getDiagramParseResult(loop.getForwardPart(), ltor);
-        String ft = fEndPoint.tag;
-        int fexx = fEndPoint.endpoint.f;
-        int fexy = fEndPoint.endpoint.s;
-        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> fBox = this.canvas.getBoundingBoxByTag(ft);
-        int fx0 = fBox.f.f;
-        int fx1 = fBox.s.f;
-        int fy1 = fBox.s.s;
-
-        // parse backward
-        UnitEndPoint bEndPoint = getDiagramParseResult(loop.getBackwardPart(), !ltor);
-        String bt = bEndPoint.tag;
-        int bexx = bEndPoint.endpoint.f;
-        int bexy = bEndPoint.endpoint.s;
-        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> bBox = this.canvas.getBoundingBoxByTag(bt);
-        int bx0 = bBox.f.f;
-        int by0 = bBox.f.s;
-        int bx1 = bBox.s.f;
-
-        // move processes
-        int fw = fx1 - fx0;
-        int bw = bx1 - bx0;
-        int dy = fy1 - by0 + vsep;
-        this.canvas.moveByTag(bt, 0, dy);
-        bexy += dy;
-        int mxx;
-
-        if (fw > bw) {
-            int dx;
-            if (fexx < fw && fexx >= bw) {
-                dx = (fexx - bw) / 2;
-                this.canvas.moveByTag(bt, dx, 0);
-                bexx += dx;
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(0, dy), new Pair<>(dx, dy),
-                                null, this.style.getLineWidth(), bt));
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(bexx, bexy), new Pair<>(fexx, bexy),
-                                "first", this.style.getLineWidth(), bt));
-            } else {
-                dx = (fw - bw) / 2;
-                this.canvas.moveByTag(bt, dx, 0);
-                bexx += dx;
+        start(new LoopFrame(loop));
+    }
 
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(0, dy), new Pair<>(dx, dy),
-                                ltor || dx < 2 * vsep ? null : "last", this.style.getLineWidth(), bt));
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(bexx, bexy), new Pair<>(fx1, bexy),
-                                !ltor || dx < 2 * vsep ? null : "first", this.style.getLineWidth(), bt));
+    /**
+     * @brief layout of Loop, backward part is placed below forward part
+     */
+    private final class LoopFrame extends Frame {
+        private final Loop loop;
+        private boolean ltor;
+        private int tag;
+        private int sep;
+        private int vsep;
+        private boolean forwardDone = false;
+        private int ft;
+        private int fexx;
+        private int fexy;
+        private int fx0;
+        private int fx1;
+        private int fy1;
+
+        private LoopFrame(Loop loop) {
+            this.loop = loop;
+        }
+
+        @Override
+        void begin() {
+            ltor = getLtor();
+            tag = canvas.newTag("x", "");
+            sep = style.getVSep();
+            vsep = sep / 2;
+
+            // parse forward
+            parseDiagram(loop.getForwardPart(), ltor);
+        }
+
+        @Override
+        void next(UnitEndPoint endPoint) {
+            if (!forwardDone) {
+                forwardDone = true;
+                measureForward(endPoint);
+                // parse backward
+                parseDiagram(loop.getBackwardPart(), !ltor);
+            } else {
+                place(endPoint);
             }
-            mxx = fexx;
-        } else if (bw > fw) {
-            int dx = (bw - fw) / 2;
-            this.canvas.moveByTag(ft, dx, 0);
-            fexx += dx;
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(0, 0), new Pair<>(dx, fexy),
-                            ltor ? "last" : "first", this.style.getLineWidth(), ft));
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(fexx, fexy), new Pair<>(bx1, fexy),
-                            null, this.style.getLineWidth(), ft));
-            mxx = bexx;
-        } else {
-            mxx = fexx;
         }
 
-        // retag
-        this.canvas.addTagByTag(tag, bt);
-        this.canvas.addTagByTag(tag, ft);
-        this.canvas.dropTag(bt);
-        this.canvas.dropTag(ft);
+        private void measureForward(UnitEndPoint fEndPoint) {
+            ft = fEndPoint.tag;
+            fexx = fEndPoint.endpoint.f;
+            fexy = fEndPoint.endpoint.s;
+            Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> fBox = canvas.getBoundingBoxByTag(ft);
+            fx0 = fBox.f.f;
+            fx1 = fBox.s.f;
+            fy1 = fBox.s.s;
+        }
 
-        // move for left turnback
-        this.canvas.moveByTag(tag, sep, 0);
+        private void place(UnitEndPoint bEndPoint) {
+            int bt = bEndPoint.tag;
+            int bexx = bEndPoint.endpoint.f;
+            int bexy = bEndPoint.endpoint.s;
+            Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> bBox = canvas.getBoundingBoxByTag(bt);
+            int bx0 = bBox.f.f;
+            int by0 = bBox.f.s;
+            int bx1 = bBox.s.f;
+
+            // move processes
+            int fw = fx1 - fx0;
+            int bw = bx1 - bx0;
+            int dy = fy1 - by0 + vsep;
+            canvas.moveByTag(bt, 0, dy);
+            bexy += dy;
+            int mxx;
+
+            if (fw > bw) {
+                int dx;
+                if (fexx < fw && fexx >= bw) {
+                    dx = (fexx - bw) / 2;
+                    canvas.moveByTag(bt, dx, 0);
+                    bexx += dx;
+                    canvas.addElement(
+                            new LineElement(geometry, 0, dy, dx, dy,
+                                    null, style.getLineWidth(), bt));
+                    canvas.addElement(
+                            new LineElement(geometry, bexx, bexy, fexx, bexy,
+                                    "first", style.getLineWidth(), bt));
+                } else {
+                    dx = (fw - bw) / 2;
+                    canvas.moveByTag(bt, dx, 0);
+                    bexx += dx;
+
+                    canvas.addElement(
+                            new LineElement(geometry, 0, dy, dx, dy,
+                                    ltor || dx < 2 * vsep ? null : "last", style.getLineWidth(), bt));
+                    canvas.addElement(
+                            new LineElement(geometry, bexx, bexy, fx1, bexy,
+                                    !ltor || dx < 2 * vsep ? null : "first", style.getLineWidth(), bt));
+                }
+                mxx = fexx;
+            } else if (bw > fw) {
+                int dx = (bw - fw) / 2;
+                canvas.moveByTag(ft, dx, 0);
+                fexx += dx;
+                canvas.addElement(
+                        new LineElement(geometry, 0, 0, dx, fexy,
+                                ltor ? "last" : "first", style.getLineWidth(), ft));
+                canvas.addElement(
+                        new LineElement(geometry, fexx, fexy, bx1, fexy,
+                                null, style.getLineWidth(), ft));
+                mxx = bexx;
+            } else {
+                mxx = fexx;
+            }
 
-        mxx += sep;
-        this.canvas.addElement(
-                new LineElement(new Pair<>(0, 0), new Pair<>(sep, 0),
-                        null, this.style.getLineWidth(), tag));
+            // retag
+            canvas.addTagByTag(tag, bt);
+            canvas.addTagByTag(tag, ft);
+            canvas.dropTag(bt);
+            canvas.dropTag(ft);
 
-        drawLeftTurnBack(tag, sep, 0, dy, ltor ? "up" : "down");
-        drawRightTurnBack(tag, mxx, fexy, bexy, ltor ? "down" : "up");
+            // move for left turnback
+            canvas.moveByTag(tag, sep, 0);
 
-        int exitX = mxx + this.style.getMaxRadius();
-        this.canvas.addElement(
-                new LineElement(new Pair<>(mxx, fexy), new Pair<>(exitX, fexy),
-                        null, this.style.getLineWidth(), tag));
+            mxx += sep;
+            canvas.addElement(
+                    new LineElement(geometry, 0, 0, sep, 0,
+                            null, style.getLineWidth(), tag));
+
+            drawLeftTurnBack(tag, sep, 0, dy, ltor ? "up" : "down");
+            drawRightTurnBack(tag, mxx, fexy, bexy, ltor ? "down" : "up");
+
+            int exitX = mxx + style.getMaxRadius();
+            canvas.addElement(
+                    new LineElement(geometry, mxx, fexy, exitX, fexy,
+                            null, style.getLineWidth(), tag));
 
-        setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(exitX, fexy)));
+            finish(new UnitEndPoint(tag, new Pair<>(exitX, fexy)));
+        }
     }
 
     @Override
     public void visitChoice(Choice choice) {
-        boolean ltor = getLtor();
-        String tag = this.canvas.newTag("x", "");
+        start(new ChoiceFrame(choice));
+    }
 
-        int sep = this.style.getVSep();
-        int vsep = sep / 2;
+    /**
+     * @brief layout of Choice, alternatives are placed one below another
+     */
+    private final class ChoiceFrame extends Frame {
+        private final Choice choice;
+        private boolean ltor;
+        private int tag;
+        private int sep;
+        private int vsep;
+        private int n;
+        private final ArrayList<UnitEndPoint> res = new ArrayList<>();
+        private int mxw = 0;
+
+        private ChoiceFrame(Choice choice) {
+            this.choice = choice;
+        }
 
-        int n = choice.getUnits().size();
+        @Override
+        void begin() {
+            ltor = getLtor();
+            tag = canvas.newTag("x", "");
 
-        if (n == 0) {
-            setUnitEndPoint(null);
-            return;
+            sep = style.getVSep();
+            vsep = sep / 2;
+
+            n = choice.getUnits().size();
+
+            if (n == 0) {
+                finish(null);
+                return;
+            }
+            parseDiagram(choice.getUnits().get(0), ltor);
         }
-        ArrayList<UnitEndPoint> res = new ArrayList<>();
-        int mxw = 0;
 
-        for (int i = 0; i < n; ++i) {
-            res.add(getDiagramParseResult(choice.getUnits().get(i), ltor));
+        @Override
+        void next(UnitEndPoint endPoint) {
+            int i = res.size();
+            res.add(endPoint);
 
             Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box =
-                    this.canvas.getBoundingBoxByTag(res.get(i).tag);
+                    canvas.getBoundingBoxByTag(res.get(i).tag);
             int w = box.s.f - box.f.f;
             if (i != 0) {
                 w += 20;
             }
             mxw = Math.max(mxw, w);
-        }
-
-        int x2 = sep * 2;
-        int x3 = mxw + x2;
-        int x4 = x3 + sep;
-        int x5 = x4 + sep;
 
-        int exy = 0;
-        int btm = 0;
-
-        for (int i = 0; i < n; ++i) {
-            String t = res.get(i).tag;
-            int texx = res.get(i).endpoint.f;
-            int texy = res.get(i).endpoint.s;
-            Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box =
-                    this.canvas.getBoundingBoxByTag(t);
-            int w = box.s.f - box.f.f;
-            int dx = (mxw - w) / 2 + x2;
-            if (w > 10 && dx > x2 + 10) {
-                dx = x2 + 10;
+            if (i + 1 < n) {
+                parseDiagram(choice.getUnits().get(i + 1), ltor);
+            } else {
+                place();
             }
-            this.canvas.moveByTag(t, dx, 0);
-            texx += dx;
-            box = this.canvas.getBoundingBoxByTag(t);
-            int ty0 = box.f.s;
-            int ty1 = box.s.s;
+        }
 
-            if (i == 0) {
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(0, 0), new Pair<>(dx, 0),
-                                ltor && dx > x2 ? "last" : null, this.style.getLineWidth(), tag));
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(texx, texy), new Pair<>(x5 + 1, texy),
-                                ltor ? null : "first", this.style.getLineWidth(), tag));
-                exy = texy;
-                this.canvas.addElement(
-                        new ArcElement(new Pair<>(-sep, 0), new Pair<>(sep, sep * 2),
-                                this.style.getLineWidth(), 90, -90, tag));
-                btm = ty1;
-            } else {
-                int dy = Math.max(btm - ty0 + vsep, 2 * sep);
-                this.canvas.moveByTag(t, 0, dy);
-                texy += dy;
-                if (dx > x2) {
-                    this.canvas.addElement(
-                            new LineElement(new Pair<>(x2, dy), new Pair<>(dx, dy),
-                                    ltor ? "last" : null, this.style.getLineWidth(), tag));
-                    this.canvas.addElement(
-                            new LineElement(new Pair<>(texx, texy), new Pair<>(x3, texy),
-                                    ltor ? null : "first", this.style.getLineWidth(), tag));
+        private void place() {
+            int x2 = sep * 2;
+            int x3 = mxw + x2;
+            int x4 = x3 + sep;
+            int x5 = x4 + sep;
+
+            int exy = 0;
+            int btm = 0;
+
+            for (int i = 0; i < n; ++i) {
+                int t = res.get(i).tag;
+                int texx = res.get(i).endpoint.f;
+                int texy = res.get(i).endpoint.s;
+                Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box =
+                        canvas.getBoundingBoxByTag(t);
+                int w = box.s.f - box.f.f;
+                int dx = (mxw - w) / 2 + x2;
+                if (w > 10 && dx > x2 + 10) {
+                    dx = x2 + 10;
                 }
-                int y1 = dy - 2 * sep;
-                this.canvas.addElement(
-                        new ArcElement(new Pair<>(sep, y1), new Pair<>(sep + 2 * sep, dy),
-                                this.style.getLineWidth(), 180, 90, tag));
-                int y2 = texy - 2 * sep;
-                this.canvas.addElement(
-                        new ArcElement(new Pair<>(x3 - sep, y2), new Pair<>(x4, texy),
-                                this.style.getLineWidth(), 270, 90, tag));
-                if (i + 1 == n) {
-                    this.canvas.addElement(
-                            new ArcElement(new Pair<>(x4, exy), new Pair<>(x4 + 2 * sep, exy + 2 * sep),
-                                    this.style.getLineWidth(), 180, -90, tag));
-                    this.canvas.addElement(
-                            new LineElement(new Pair<>(sep, dy - sep), new Pair<>(sep, sep),
-                                    null, this.style.getLineWidth(), tag));
-                    this.canvas.addElement(
-                            new LineElement(new Pair<>(x4, texy - sep), new Pair<>(x4, exy + sep),
-                                    null, this.style.getLineWidth(), tag));
+                canvas.moveByTag(t, dx, 0);
+                texx += dx;
+                box = canvas.getBoundingBoxByTag(t);
+                int ty0 = box.f.s;
+                int ty1 = box.s.s;
+
+                if (i == 0) {
+                    canvas.addElement(
+                            new LineElement(geometry, 0, 0, dx, 0,
+                                    ltor && dx > x2 ? "last" : null, style.getLineWidth(), tag));
+                    canvas.addElement(
+                            new LineElement(geometry, texx, texy, x5 + 1, texy,
+                                    ltor ? null : "first", style.getLineWidth(), tag));
+                    exy = texy;
+                    canvas.addElement(
+                            new ArcElement(geometry, -sep, 0, sep, sep * 2,
+                                    style.getLineWidth(), 90, -90, tag));
+                    btm = ty1;
+                } else {
+                    int dy = Math.max(btm - ty0 + vsep, 2 * sep);
+                    canvas.moveByTag(t, 0, dy);
+                    texy += dy;
+                    if (dx > x2) {
+                        canvas.addElement(
+                                new LineElement(geometry, x2, dy, dx, dy,
+                                        ltor ? "last" : null, style.getLineWidth(), tag));
+                        canvas.addElement(
+                                new LineElement(geometry, texx, texy, x3, texy,
+                                        ltor ? null : "first", style.getLineWidth(), tag));
+                    }
+                    int y1 = dy - 2 * sep;
+                    canvas.addElement(
+                            new ArcElement(geometry, sep, y1, sep + 2 * sep, dy,
+                                    style.getLineWidth(), 180, 90, tag));
+                    int y2 = texy - 2 * sep;
+                    canvas.addElement(
+                            new ArcElement(geometry, x3 - sep, y2, x4, texy,
+                                    style.getLineWidth(), 270, 90, tag));
+                    if (i + 1 == n) {
+                        canvas.addElement(
+                                new ArcElement(geometry, x4, exy, x4 + 2 * sep, exy + 2 * sep,
+                                        style.getLineWidth(), 180, -90, tag));
+                        canvas.addElement(
+                                new LineElement(geometry, sep, dy - sep, sep, sep,
+                                        null, style.getLineWidth(), tag));
+                        canvas.addElement(
+                                new LineElement(geometry, x4, texy - sep, x4, exy + sep,
+                                        null, style.getLineWidth(), tag));
+                    }
+                    btm = ty1 + dy;
                 }
-                btm = ty1 + dy;
+
+                // retag
+                canvas.addTagByTag(tag, t);
+                canvas.dropTag(t);
             }
 
-            // retag
-            this.canvas.addTagByTag(tag, t);
-            this.canvas.dropTag(t);
+            finish(new UnitEndPoint(tag, new Pair<>(x5, exy)));
         }
-
-        setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(x5, exy)));
     }
 
     @Override
@@ -636,35 +935,54 @@ public final class SVGCanvasBuilder implements Visitor {
     }
 
     /**
-     * Unobvious fact: self.indent < 0 if (stack instanceof Rightstack)
+     * @brief layout of Stack, Rightstack and Indentstack, lines are placed one below another
+     * @details Unobvious fact: self.indent < 0 if (stack instanceof Rightstack)
      */
-    private void parseStack(Stack stack) {
-        boolean ltor = getLtor();
-        String tag = this.canvas.newTag("x", "");
+    private final class StackFrame extends Frame {
+        private final Stack stack;
+        private boolean ltor;
+        private int tag;
+        private int sep;
+        private int btm = 0;
+        private int n;
+        private int i = 0;
+        private int nextBypassY = 0;
+        private int bypassX = 0;
+        private int bypassY;
+        private int exitX = 0;
+        private int exitY = 0;
+        private int bypass = 0;
+
+        private StackFrame(Stack stack) {
+            this.stack = stack;
+        }
 
-        int sep = this.style.getVSep() * 2;
-        int btm = 0;
-        int n = stack.getUnits().size();
-        if (n == 0) {
-            setUnitEndPoint(null);
-            return;
+        @Override
+        void begin() {
+            ltor = getLtor();
+            tag = canvas.newTag("x", "");
+
+            sep = style.getVSep() * 2;
+            n = stack.getUnits().size();
+            if (n == 0) {
+                finish(null);
+                return;
+            }
+            parseTerm();
+        }
+
+        @Override
+        void next(UnitEndPoint endPoint) {
+            place(endPoint);
+            ++i;
+            if (i < n) {
+                parseTerm();
+            } else {
+                end();
+            }
         }
-        int nextBypassY = 0;
-        int bypassX = 0;
-        int bypassY;
-        int exitX = 0;
-        int exitY = 0;
-        int w;
-        int e2;
-        int e3;
-        int ex2;
-        int enterX;
-        int enterY;
-        int backY;
-        int midY;
-        int bypass = 0;
-
-        for (int i = 0; i < n; ++i) {
+
+        private void parseTerm() {
             Unit unit = stack.getUnits().get(i);
             Unit term;
             bypassY = nextBypassY;
@@ -677,12 +995,15 @@ public final class SVGCanvasBuilder implements Visitor {
                 nextBypassY = 0;
             }
 
-            UnitEndPoint ep = getDiagramParseResult(term, ltor);
-            String t = ep.tag;
+            parseDiagram(term, ltor);
+        }
+
+        private void place(UnitEndPoint ep) {
+            int t = ep.tag;
             int exx = ep.endpoint.f;
             int exy = ep.endpoint.s;
             Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box =
-                    this.canvas.getBoundingBoxByTag(t);
+                    canvas.getBoundingBoxByTag(t);
             int tx0 = box.f.f;
             int ty0 = box.f.s;
             int tx1 = box.s.f;
@@ -691,124 +1012,127 @@ public final class SVGCanvasBuilder implements Visitor {
                 exitX = exx;
                 exitY = exy;
             } else {
-                enterY = btm - ty0 + sep * 2 + 2;
+                int enterY = btm - ty0 + sep * 2 + 2;
                 if (bypass == 1) {
-                    nextBypassY = enterY - this.style.getMaxRadius();
+                    nextBypassY = enterY - style.getMaxRadius();
                 }
+                int enterX;
                 if (indent < 0) {
-                    w = tx1 - tx0;
+                    int w = tx1 - tx0;
                     enterX = exitX - w + sep * indent;
-                    ex2 = sep * 2 - indent;
+                    int ex2 = sep * 2 - indent;
                     if (ex2 > enterX) {
                         enterX = ex2;
                     }
                 } else {
                     enterX = sep * 2 + indent;
                 }
-                backY = btm + sep + 1;
+                int backY = btm + sep + 1;
 
                 if (bypassY > 0) {
-                    midY = (bypassY + this.style.getMaxRadius() + backY) / 2;
-                    this.canvas.addElement(
-                            new LineElement(new Pair<>(bypassX, bypassY), new Pair<>(bypassX, midY),
-                                    "last", this.style.getLineWidth(), tag));
-                    this.canvas.addElement(
-                            new LineElement(new Pair<>(bypassX, midY),
-                                    new Pair<>(bypassX, backY + this.style.getMaxRadius()),
-                                    null, this.style.getLineWidth(), tag));
+                    int midY = (bypassY + style.getMaxRadius() + backY) / 2;
+                    canvas.addElement(
+                            new LineElement(geometry, bypassX, bypassY, bypassX, midY,
+                                    "last", style.getLineWidth(), tag));
+                    canvas.addElement(
+                            new LineElement(geometry, bypassX, midY,
+                                    bypassX, backY + style.getMaxRadius(),
+                                    null, style.getLineWidth(), tag));
                 }
 
-                this.canvas.moveByTag(t, enterX, enterY);
-                e2 = exitX + sep;
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(exitX, exitY), new Pair<>(e2, exitY),
-                                null, this.style.getLineWidth(), tag));
+                canvas.moveByTag(t, enterX, enterY);
+                int e2 = exitX + sep;
+                canvas.addElement(
+                        new LineElement(geometry, exitX, exitY, e2, exitY,
+                                null, style.getLineWidth(), tag));
                 drawRightTurnBack(tag, e2, exitY, backY, "down");
-                e3 = enterX - sep;
-                bypassX = e3 - this.style.getMaxRadius();
+                int e3 = enterX - sep;
+                bypassX = e3 - style.getMaxRadius();
                 int emid = (e2 + e3) / 2;
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(e2, backY), new Pair<>(emid, backY),
-                                "last", this.style.getLineWidth(), tag));
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(emid, backY), new Pair<>(e3, backY),
-                                null, this.style.getLineWidth(), tag));
+                canvas.addElement(
+                        new LineElement(geometry, e2, backY, emid, backY,
+                                "last", style.getLineWidth(), tag));
+                canvas.addElement(
+                        new LineElement(geometry, emid, backY, e3, backY,
+                                null, style.getLineWidth(), tag));
                 drawLeftTurnBack(tag, e3, backY, enterY, "down");
-                this.canvas.addElement(
-                        new LineElement(new Pair<>(e3, enterY), new Pair<>(enterX, enterY),
-                                "last", this.style.getLineWidth(), tag));
+                canvas.addElement(
+                        new LineElement(geometry, e3, enterY, enterX, enterY,
+                                "last", style.getLineWidth(), tag));
                 exitX = enterX + exx;
                 exitY = enterY + exy;
             }
 
             // retag
-            this.canvas.addTagByTag(tag, t);
-            this.canvas.dropTag(t);
-            btm = this.canvas.getBoundingBoxByTag(tag).s.s;
+            canvas.addTagByTag(tag, t);
+            canvas.dropTag(t);
+            btm = canvas.getBoundingBoxByTag(tag).s.s;
         }
 
-        if (bypass == 1) {
-            int fwdY = btm + sep + 1;
-            midY = (nextBypassY + this.style.getMaxRadius() + fwdY) / 2;
-            int descenderX = exitX + this.style.getMaxRadius();
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(bypassX, nextBypassY), new Pair<>(bypassX, midY),
-                            "last", this.style.getLineWidth(), tag));
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(bypassX, midY),
-                            new Pair<>(bypassX, fwdY - this.style.getMaxRadius()),
-                            null, this.style.getLineWidth(), tag));
-            this.canvas.addElement(
-                    new ArcElement(new Pair<>(bypassX, fwdY - 2 * this.style.getMaxRadius()),
-                            new Pair<>(bypassX + 2 * this.style.getMaxRadius(), fwdY),
-                            this.style.getLineWidth(), 180, 90, tag));
-            this.canvas.addElement(
-                    new ArcElement(new Pair<>(exitX - this.style.getMaxRadius(), exitY),
-                            new Pair<>(descenderX, exitY + 2 * this.style.getMaxRadius()),
-                            this.style.getLineWidth(), 90, -90, tag));
-            this.canvas.addElement(
-                    new ArcElement(new Pair<>(descenderX, fwdY - 2 * this.style.getMaxRadius()),
-                            new Pair<>(descenderX + 2 * this.style.getMaxRadius(), fwdY),
-                            this.style.getLineWidth(), 180, 90, tag));
-            exitX += 2 * this.style.getMaxRadius();
-            int halfX = (exitX + indent) / 2;
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(bypassX + this.style.getMaxRadius(), fwdY),
-                            new Pair<>(halfX, fwdY),
-                            "last", this.style.getLineWidth(), tag));
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(halfX, fwdY), new Pair<>(exitX, fwdY),
-                            null, this.style.getLineWidth(), tag));
-            this.canvas.addElement(
-                    new LineElement(new Pair<>(descenderX, exitY + this.style.getMaxRadius()),
-                            new Pair<>(descenderX, fwdY - this.style.getMaxRadius()),
-                            "last", this.style.getLineWidth(), tag));
-            exitY = fwdY;
-        }
+        private void end() {
+            if (bypass == 1) {
+                int fwdY = btm + sep + 1;
+                int midY = (nextBypassY + style.getMaxRadius() + fwdY) / 2;
+                int descenderX = exitX + style.getMaxRadius();
+                canvas.addElement(
+                        new LineElement(geometry, bypassX, nextBypassY, bypassX, midY,
+                                "last", style.getLineWidth(), tag));
+                canvas.addElement(
+                        new LineElement(geometry, bypassX, midY,
+                                bypassX, fwdY - style.getMaxRadius(),
+                                null, style.getLineWidth(), tag));
+                canvas.addElement(
+                        new ArcElement(geometry, bypassX, fwdY - 2 * style.getMaxRadius(),
+                                bypassX + 2 * style.getMaxRadius(), fwdY,
+                                style.getLineWidth(), 180, 90, tag));
+                canvas.addElement(
+                        new ArcElement(geometry, exitX - style.getMaxRadius(), exitY,
+                                descenderX, exitY + 2 * style.getMaxRadius(),
+                                style.getLineWidth(), 90, -90, tag));
+                canvas.addElement(
+                        new ArcElement(geometry, descenderX, fwdY - 2 * style.getMaxRadius(),
+                                descenderX + 2 * style.getMaxRadius(), fwdY,
+                                style.getLineWidth(), 180, 90, tag));
+                exitX += 2 * style.getMaxRadius();
+                int halfX = (exitX + indent) / 2;
+                canvas.addElement(
+                        new LineElement(geometry, bypassX + style.getMaxRadius(), fwdY,
+                                halfX, fwdY,
+                                "last", style.getLineWidth(), tag));
+                canvas.addElement(
+                        new LineElement(geometry, halfX, fwdY, exitX, fwdY,
+                                null, style.getLineWidth(), tag));
+                canvas.addElement(
+                        new LineElement(geometry, descenderX, exitY + style.getMaxRadius(),
+                                descenderX, fwdY - style.getMaxRadius(),
+                                "last", style.getLineWidth(), tag));
+                exitY = fwdY;
+            }
 
-        setUnitEndPoint(new UnitEndPoint(tag, new Pair<>(exitX, exitY)));
+            finish(new UnitEndPoint(tag, new Pair<>(exitX, exitY)));
+        }
     }
 
     @Override
     public void visitStack(Stack stack) {
         setIndent(0);
-        parseStack(stack);
+        start(new StackFrame(stack));
     }
 
     @Override
     public void visitRightstack(Rightstack unit) {
         setIndent(-1);
-        parseStack(unit);
+        start(new StackFrame(unit));
     }
 
     @Override
     public void visitIndentstack(Indentstack unit) {
         int sep = this.style.getHSep() * unit.getIndent();
         setIndent(sep);
-        parseStack(unit);
+        start(new StackFrame(unit));
     }
 
-    private void drawLeftTurnBack(String tag, int x, int yy0, int yy1, String flow) {
+    private void drawLeftTurnBack(int tag, int x, int yy0, int yy1, String flow) {
         int y0 = Math.min(yy0, yy1);
         int y1 = Math.max(yy0, yy1);
 
@@ -816,7 +1140,7 @@ public final class SVGCanvasBuilder implements Visitor {
             int xr0 = x - this.style.getMaxRadius();
             int xr1 = x + this.style.getMaxRadius();
             this.canvas.addElement(
-                    new ArcElement(new Pair<>(xr0, y0), new Pair<>(xr1, y0 + 2 * this.style.getMaxRadius()),
+                    new ArcElement(this.geometry, xr0, y0, xr1, y0 + 2 * this.style.getMaxRadius(),
                             this.style.getLineWidth(), 90, 90, tag));
             int yr0 = y0 + this.style.getMaxRadius();
             int yr1 = y1 - this.style.getMaxRadius();
@@ -824,39 +1148,39 @@ public final class SVGCanvasBuilder implements Visitor {
                 int halfY = (yr0 + yr1) / 2;
                 if ("down".equals(flow)) {
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr0, yr0), new Pair<>(xr0, halfY),
+                            new LineElement(this.geometry, xr0, yr0, xr0, halfY,
                                     "last", this.style.getLineWidth(), tag));
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr0, halfY), new Pair<>(xr0, yr1),
+                            new LineElement(this.geometry, xr0, halfY, xr0, yr1,
                                     null, this.style.getLineWidth(), tag));
                 } else {
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr0, yr1), new Pair<>(xr0, halfY),
+                            new LineElement(this.geometry, xr0, yr1, xr0, halfY,
                                     "last", this.style.getLineWidth(), tag));
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr0, halfY), new Pair<>(xr0, yr0),
+                            new LineElement(this.geometry, xr0, halfY, xr0, yr0,
                                     null, this.style.getLineWidth(), tag));
                 }
             } else {
                 this.canvas.addElement(
-                        new LineElement(new Pair<>(xr0, yr0), new Pair<>(xr0, yr1),
+                        new LineElement(this.geometry, xr0, yr0, xr0, yr1,
                                 null, this.style.getLineWidth(), tag));
             }
 
             this.canvas.addElement(
-                    new ArcElement(new Pair<>(xr0, y1 - 2 * this.style.getMaxRadius()), new Pair<>(xr1, y1),
+                    new ArcElement(this.geometry, xr0, y1 - 2 * this.style.getMaxRadius(), xr1, y1,
                             this.style.getLineWidth(), 180, 90, tag));
         } else {
             int r = (y1 - y0) / 2;
             int x0 = x - r;
             int x1 = x + r;
             this.canvas.addElement(
-                    new ArcElement(new Pair<>(x0, y0), new Pair<>(x1, y1),
+                    new ArcElement(this.geometry, x0, y0, x1, y1,
                             this.style.getLineWidth(), 90, 180, tag));
         }
     }
 
-    private void drawRightTurnBack(String tag, int x, int yy0, int yy1, String flow) {
+    private void drawRightTurnBack(int tag, int x, int yy0, int yy1, String flow) {
         int y0 = Math.min(yy0, yy1);
         int y1 = Math.max(yy0, yy1);
 
@@ -865,7 +1189,7 @@ public final class SVGCanvasBuilder implements Visitor {
             int xr1 = x + this.style.getMaxRadius();
 
             this.canvas.addElement(
-                    new ArcElement(new Pair<>(xr0, y0), new Pair<>(xr1, y0 + 2 * this.style.getMaxRadius()),
+                    new ArcElement(this.geometry, xr0, y0, xr1, y0 + 2 * this.style.getMaxRadius(),
                             this.style.getLineWidth(), 90, -90, tag));
             int yr0 = y0 + this.style.getMaxRadius();
             int yr1 = y1 - this.style.getMaxRadius();
@@ -874,45 +1198,64 @@ public final class SVGCanvasBuilder implements Visitor {
                 int halfY = (yr1 + yr0) / 2;
                 if ("down".equals(flow)) {
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr1, yr0), new Pair<>(xr1, halfY),
+                            new LineElement(this.geometry, xr1, yr0, xr1, halfY,
                                     "last", this.style.getLineWidth(), tag));
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr1, halfY), new Pair<>(xr1, yr1),
+                            new LineElement(this.geometry, xr1, halfY, xr1, yr1,
                                     null, this.style.getLineWidth(), tag));
                 } else {
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr1, yr1), new Pair<>(xr1, halfY),
+                            new LineElement(this.geometry, xr1, yr1, xr1, halfY,
                                     "last", this.style.getLineWidth(), tag));
                     this.canvas.addElement(
-                            new LineElement(new Pair<>(xr1, halfY), new Pair<>(xr1, yr0),
+                            new LineElement(this.geometry, xr1, halfY, xr1, yr0,
                                     null, this.style.getLineWidth(), tag));
                 }
             } else {
                 this.canvas.addElement(
-                        new LineElement(new Pair<>(xr1, yr0), new Pair<>(xr1, yr1),
+                        new LineElement(this.geometry, xr1, yr0, xr1, yr1,
                                 null, this.style.getLineWidth(), tag));
             }
 
             this.canvas.addElement(
-                    new ArcElement(new Pair<>(xr0, y1 - 2 * this.style.getMaxRadius()), new Pair<>(xr1, y1),
+                    new ArcElement(this.geometry, xr0, y1 - 2 * this.style.getMaxRadius(), xr1, y1,
                             this.style.getLineWidth(), 0, -90, tag));
         } else {
             int r = (y1 - y0) / 2;
             int x0 = x - r;
             int x1 = x + r;
             this.canvas.addElement(
-                    new ArcElement(new Pair<>(x0, y0), new Pair<>(x1, y1),
+                    new ArcElement(this.geometry, x0, y0, x1, y1,
                             this.style.getLineWidth(), 90, -180, tag));
         }
     }
 
+    private Pair<Integer, Integer> measureText(String text, Font font) {
+        return getTextSizeCache(style.getTextMetrics()).getTextSize(text, font);
+    }
+
     public static Pair<Integer, Integer> getTextSize(String text, Font font) {
+        return TEXT_SIZES.getTextSize(text, font);
+    }
+
+    /**
+     * @return cache of text sizes measured with installed fonts, shared by all builders
+     */
+    public static TextSizeCache getTextSizeCache() {
+        return TEXT_SIZES;
+    }
 
-        Rectangle2D r = font.getStringBounds(text,
-                new FontRenderContext(null, true, true));
+    /**
+     * @return cache of text sizes measured by the given metrics, shared by all builders
+     */
+    public static TextSizeCache getTextSizeCache(TextMetrics metrics) {
+        return metrics == TextMetrics.table ? TableTextSizes.INSTANCE : TEXT_SIZES;
+    }
 
-        return new Pair<>((int) (r.getMaxX() - r.getMinX() + text.length() + 10),
-                (int) (r.getMaxY() - r.getMinY() + 10));
+    // tables are loaded only when requested
+    private static final class TableTextSizes {
+        private static final TextSizeCache INSTANCE =
+                new TextSizeCache(TEXT_SIZE_CACHE_CAPACITY, TableFontMetrics.getInstance());
     }
 
     /**
@@ -920,12 +1263,12 @@ public final class SVGCanvasBuilder implements Visitor {
      * @details contain pair of tag end endpoint
      */
     public static class UnitEndPoint {
-        UnitEndPoint(String tag, Pair<Integer, Integer> endpoint) {
+        UnitEndPoint(int tag, Pair<Integer, Integer> endpoint) {
             this.tag = tag;
             this.endpoint = endpoint;
         }
 
-        public final String tag;
+        public final int tag;
         public final Pair<Integer, Integer> endpoint;
     }
 
@@ -0,0 +1,228 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.generators.elements.ArcElement;
+import org.atpfivt.jsyntrax.generators.elements.BoxBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.BubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.BubbleElementBase;
+import org.atpfivt.jsyntrax.generators.elements.Element;
+import org.atpfivt.jsyntrax.generators.elements.ElementVisitor;
+import org.atpfivt.jsyntrax.generators.elements.HexBubbleElement;
+import org.atpfivt.jsyntrax.generators.elements.LineElement;
+import org.atpfivt.jsyntrax.generators.elements.OvalElement;
+import org.atpfivt.jsyntrax.generators.elements.PaintClasses;
+import org.atpfivt.jsyntrax.generators.elements.SVGAttributes;
+import org.atpfivt.jsyntrax.generators.elements.SVGPath;
+import org.atpfivt.jsyntrax.generators.elements.TitleElement;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.util.StringUtils;
+
+/**
+ * @brief writes elements as SVG text
+ * @details Every element is written in one of the modes: its shadow, the element itself,
+ * a symbol relative to its top left corner, or a part of a path.
+ */
+final class SVGElementWriter implements ElementVisitor {
+    private enum Mode {
+        SHADOW,
+        SHAPE,
+        SYMBOL,
+        PATH
+    }
+
+    private final StyleConfig style;
+    private final PaintClasses paints;
+    private StringBuilder sb;
+    private SVGPath path;
+    private Mode mode;
+    // offset of the drawing
+    private int dx;
+    private int dy;
+    // the visited element was written in the mode
+    private boolean written;
+
+    SVGElementWriter(StyleConfig style, PaintClasses paints) {
+        this.style = style;
+        this.paints = paints;
+    }
+
+    /**
+     * @brief writes the shadow of the element drawn as a separate shape
+     */
+    void addShadow(StringBuilder sb, Element e) {
+        write(sb, e, Mode.SHADOW, 0, 0);
+    }
+
+    void toSVG(StringBuilder sb, Element e) {
+        write(sb, e, Mode.SHAPE, 0, 0);
+    }
+
+    /**
+     * @brief writes the element with its shadow relative to its top left corner, to be placed with use
+     * @return false if the element cannot be reused
+     */
+    boolean toSymbol(StringBuilder sb, Element e) {
+        return write(sb, e, Mode.SYMBOL, -e.getX0(), -e.getY0());
+    }
+
+    /**
+     * @brief draws the element as a part of the path instead of a separate shape
+     * @return false if the element cannot be a part of a path
+     */
+    boolean addToPath(SVGPath path, Element e) {
+        this.path = path;
+        boolean added = write(null, e, Mode.PATH, 0, 0);
+        this.path = null;
+        return added;
+    }
+
+    private boolean write(StringBuilder sb, Element e, Mode mode, int dx, int dy) {
+        this.sb = sb;
+        this.mode = mode;
+        this.dx = dx;
+        this.dy = dy;
+        written = false;
+        e.accept(this);
+        this.sb = null;
+        return written;
+    }
+
+    @Override
+    public void visitBubble(BubbleElement e) {
+        writeNode(e, (x, y) -> NodeOutline.of(e, x, y));
+    }
+
+    @Override
+    public void visitBoxBubble(BoxBubbleElement e) {
+        writeNode(e, (x, y) -> NodeOutline.of(e, x, y));
+    }
+
+    @Override
+    public void visitHexBubble(HexBubbleElement e) {
+        int rad = (e.getY1() - e.getY0()) / 2;
+        // narrow hexagons are drawn at a position depending on absolute coordinates
+        if (mode == Mode.SYMBOL && Math.abs(e.getX1() - e.getX0() - 2 * rad) <= 1) {
+            return;
+        }
+        writeNode(e, (x, y) -> NodeOutline.of(e, x, y));
+    }
+
+    @Override
+    public void visitTitle(TitleElement e) {
+        // only the text is drawn, once at the title position
+        if (mode == Mode.SHAPE) {
+            writeText(e, false);
+            written = true;
+        }
+    }
+
+    @Override
+    public void visitOval(OvalElement e) {
+        if (mode != Mode.SHAPE) {
+            return;
+        }
+        int x0 = e.getX0();
+        int y0 = e.getY0();
+        int x1 = e.getX1();
+        int y1 = e.getY1();
+
+        int xc = (x0 + x1) / 2;
+        int yc = (y0 + y1) / 2;
+        int rad = (x1 - x0) / 2;
+
+        sb.append("<circle cx=\"").append(xc).append("\" cy=\"").append(yc)
+                .append("\" r=\"").append(rad).append("\" ")
+                .append(paints.get(e.getAttributes(style))).append("/>\n");
+        written = true;
+    }
+
+    @Override
+    public void visitLine(LineElement e) {
+        int[] ends = e.getEnds();
+        if (mode == Mode.PATH) {
+            if (e.getArrow() == null) {
+                path.lineTo(SVGPath.getStrokeAttributes(style, e.getWidth()), ends[0], ends[1], ends[2], ends[3]);
+            } else {
+                // the marker is drawn only at the end of the whole path
+                path.close();
+                path.lineTo(e.getAttributes(style), ends[0], ends[1], ends[2], ends[3]);
+                path.close();
+            }
+            written = true;
+        } else if (mode == Mode.SHAPE) {
+            sb.append("<line ")
+                    .append("x1=\"").append(ends[0]).append("\" ")
+                    .append("y1=\"").append(ends[1]).append("\" ")
+                    .append("x2=\"").append(ends[2]).append("\" ")
+                    .append("y2=\"").append(ends[3]).append("\" ")
+                    .append(paints.get(e.getAttributes(style))).append(" />\n");
+            written = true;
+        }
+    }
+
+    @Override
+    public void visitArc(ArcElement e) {
+        int[] ends = e.getEnds();
+        int rad = (e.getX1() - e.getX0()) / 2;
+        SVGAttributes attributes = SVGPath.getStrokeAttributes(style, e.getWidth());
+        if (mode == Mode.PATH) {
+            path.arcTo(attributes, ends[0], ends[1], rad, ends[2], ends[3]);
+            written = true;
+        } else if (mode == Mode.SHAPE) {
+            sb.append("<path d=\"M").append(ends[0]).append(",").append(ends[1])
+                    .append(" A").append(rad).append(",").append(rad)
+                    .append(" 0 0,0 ").append(ends[2]).append(",").append(ends[3])
+                    .append("\" ").append(paints.get(attributes)).append("/>\n");
+            written = true;
+        }
+    }
+
+    private void writeNode(BubbleElementBase e, NodeOutline.Factory outline) {
+        if (mode == Mode.PATH) {
+            return;
+        }
+        // symbols carry their shadows unless shadows are filters
+        if (mode == Mode.SHADOW || mode == Mode.SYMBOL && style.isShadow() && !paints.isShadowFilter()) {
+            int offset = e.getWidth() + 1;
+            outline.moveBy(dx + offset, dy + offset)
+                    .toSVG(sb, paints.get(BubbleElementBase.getShadowAttributes(style)));
+        }
+        if (mode != Mode.SHADOW) {
+            outline.moveBy(dx, dy).toSVG(sb, paints.get(getShapeAttributes(e)));
+            // the link wraps every use of a symbol instead of its text
+            writeText(e, mode == Mode.SYMBOL);
+        }
+        written = true;
+    }
+
+    /**
+     * @return attributes of the node shape, with the filter drawing its shadow unless shadow is drawn separately
+     */
+    private SVGAttributes getShapeAttributes(BubbleElementBase e) {
+        if (!style.isShadow() || !paints.isShadowFilter()) {
+            return e.getShapeAttributes(style);
+        }
+        return e.getShapeAttributes(style).with("filter", paints.getShadowFilter(e.getWidth()));
+    }
+
+    /**
+     * @param linkOnUse the link wraps every use of a symbol instead of the text
+     */
+    private void writeText(BubbleElementBase e, boolean linkOnUse) {
+        int x = e.getX(style, dx);
+        int y = e.getTextBaseline(style, dy);
+
+        String txt = StringUtils.escapeXML(e.getText());
+        if (e.getHref() == null) {
+            sb.append("<text class=\"").append(e.getFontName()).append("\" x=\"").append(x)
+                    .append("\" y=\"").append(y).append("\">").append(txt).append("</text>\n");
+        } else if (linkOnUse) {
+            sb.append("<text class=\"").append(e.getFontName()).append(" link\" x=\"").append(x)
+                    .append("\" y=\"").append(y).append("\">").append(txt).append("</text>\n");
+        } else {
+            String link = StringUtils.escapeXML(e.getHref());
+            sb.append("<a xlink:href=\"").append(link).append("\" target=\"_parent\">")
+                    .append("<text class=\"").append(e.getFontName()).append(" link\" x=\"").append(x)
+                    .append("\" y=\"").append(y).append("\">").append(txt).append("</text></a>\n");
+        }
+    }
+}
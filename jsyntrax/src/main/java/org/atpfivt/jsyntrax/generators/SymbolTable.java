@@ -0,0 +1,77 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.generators.elements.BubbleElementBase;
+import org.atpfivt.jsyntrax.generators.elements.Element;
+import org.atpfivt.jsyntrax.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @brief nodes drawn more than once, written to defs once and placed with use
+ * @details Nodes are the same when they are drawn the same relative to their top left corner,
+ * that is when they have the same shape, size, style and text.
+ */
+final class SymbolTable {
+    private static final String PREFIX = "s";
+
+    // drawing of every element relative to its corner, null if it is drawn in place
+    private final String[] drawings;
+    // id of every drawing used more than once, in order of first use
+    private final Map<String, Integer> ids = new LinkedHashMap<>();
+
+    SymbolTable(List<Element> elements, SVGElementWriter writer) {
+        drawings = new String[elements.size()];
+        Map<String, String> unique = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < drawings.length; ++i) {
+            sb.setLength(0);
+            if (writer.toSymbol(sb, elements.get(i))) {
+                String drawing = unique.computeIfAbsent(sb.toString(), d -> d);
+                drawings[i] = drawing;
+                counts.merge(drawing, 1, Integer::sum);
+            }
+        }
+        for (int i = 0; i < drawings.length; ++i) {
+            if (drawings[i] == null) {
+                continue;
+            }
+            if (counts.get(drawings[i]) > 1) {
+                ids.putIfAbsent(drawings[i], ids.size());
+            } else {
+                drawings[i] = null;
+            }
+        }
+    }
+
+    void toDefs(StringBuilder sb) {
+        for (Map.Entry<String, Integer> symbol : ids.entrySet()) {
+            sb.append("<g id=\"").append(PREFIX).append(symbol.getValue()).append("\">\n")
+                    .append(symbol.getKey()).append("</g>\n");
+        }
+    }
+
+    /**
+     * @brief places the symbol of the element with index i
+     * @return false if the element is drawn in place
+     */
+    boolean toUse(StringBuilder sb, int i, Element e) {
+        if (drawings[i] == null) {
+            return false;
+        }
+        String href = e instanceof BubbleElementBase ? ((BubbleElementBase) e).getHref() : null;
+        if (href != null) {
+            sb.append("<a xlink:href=\"").append(StringUtils.escapeXML(href)).append("\" target=\"_parent\">");
+        }
+        sb.append("<use xlink:href=\"#").append(PREFIX).append(ids.get(drawings[i]))
+                .append("\" x=\"").append(e.getX0()).append("\" y=\"").append(e.getY0()).append("\"/>");
+        if (href != null) {
+            sb.append("</a>");
+        }
+        sb.append('\n');
+        return true;
+    }
+}
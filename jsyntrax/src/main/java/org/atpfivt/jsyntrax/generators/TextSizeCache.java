@@ -0,0 +1,116 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.generators.metrics.AwtFontMetrics;
+import org.atpfivt.jsyntrax.generators.metrics.FontMetricsProvider;
+import org.atpfivt.jsyntrax.util.Pair;
+
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @brief bounded thread-safe cache of node text sizes
+ * @details Diagrams repeat the same few tokens many times, so text is measured once per font
+ * by the metrics provider. The least recently used entries are evicted when the cache is full.
+ */
+public final class TextSizeCache {
+    private final int capacity;
+    private final FontMetricsProvider metrics;
+    private final Map<Key, Pair<Integer, Integer>> sizes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TextSizeCache(int capacity) {
+        this(capacity, AwtFontMetrics.INSTANCE);
+    }
+
+    public TextSizeCache(int capacity, FontMetricsProvider metrics) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.metrics = metrics;
+        this.sizes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Pair<Integer, Integer>> eldest) {
+                return size() > TextSizeCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return width and height of the node box around the text
+     */
+    public Pair<Integer, Integer> getTextSize(String text, Font font) {
+        Key key = new Key(font, text);
+        Pair<Integer, Integer> size;
+        synchronized (sizes) {
+            size = sizes.get(key);
+        }
+        if (size != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            size = measure(text, font);
+            synchronized (sizes) {
+                sizes.put(key, size);
+            }
+        }
+        return new Pair<>(size);
+    }
+
+    private Pair<Integer, Integer> measure(String text, Font font) {
+        Rectangle2D r = metrics.getStringBounds(text, font);
+
+        return new Pair<>((int) (r.getMaxX() - r.getMinX() + text.length() + 10),
+                (int) (r.getMaxY() - r.getMinY() + 10));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (sizes) {
+            return sizes.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private static final class Key {
+        private final Font font;
+        private final String text;
+
+        private Key(Font font, String text) {
+            this.font = font;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return font.equals(key.font) && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, text);
+        }
+    }
+}
@@ -1,67 +1,85 @@
 package org.atpfivt.jsyntrax.generators.elements;
 
-import org.atpfivt.jsyntrax.styles.StyleConfig;
-import org.atpfivt.jsyntrax.util.StringUtils;
-import org.atpfivt.jsyntrax.util.Pair;
+import java.awt.Font;
+import java.util.Map;
 
 public class ArcElement extends Element {
-    public ArcElement(Pair<Integer, Integer> start, Pair<Integer, Integer> end,
-                      int width, int startAngle, int extentAngle, String tag) {
-        super(tag);
-        super.setStart(start);
-        super.setEnd(end);
+    public ArcElement(Geometry geometry, int x0, int y0, int x1, int y1,
+                      int width, int startAngle, int extentAngle, int tag) {
+        super(geometry, x0, y0, x1, y1, tag);
         this.width = width;
         this.startAngle = startAngle;
         this.extentAngle = extentAngle;
     }
 
     @Override
-    public void addShadow(StringBuilder sb, StyleConfig style) { }
+    public Element copy(int x0, int y0, int x1, int y1, int tag) {
+        return new ArcElement(getGeometry(), x0, y0, x1, y1, width, startAngle, extentAngle, tag);
+    }
 
     @Override
-    public void toSVG(StringBuilder sb, StyleConfig style) {
-        int x0 = super.getStart().f;
-        int y0 = super.getStart().s;
-        int x1 = super.getEnd().f;
-        int y1 = super.getEnd().s;
+    public void accept(ElementVisitor visitor) {
+        visitor.visitArc(this);
+    }
+
+    /**
+     * @return start and end points of the counterclockwise arc as {xs, ys, xe, ye}
+     */
+    public int[] getEnds() {
+        int x0 = getX0();
+        int y0 = getY0();
+        int x1 = getX1();
+        int y1 = getY1();
 
         int xc = (x0 + x1) / 2;
         int yc = (y0 + y1) / 2;
         int rad = (x1 - x0) / 2;
 
-        this.startAngle %= 360;
-        int stop = (this.startAngle + this.extentAngle) % 360;
+        int start = this.startAngle % 360;
+        int stop = (start + this.extentAngle) % 360;
 
         if (this.extentAngle < 0) {
-            int tmp = this.startAngle;
-            this.startAngle = stop;
+            int tmp = start;
+            start = stop;
             stop = tmp;
         }
 
-        double startRad = Math.toRadians(this.startAngle);
+        double startRad = Math.toRadians(start);
         double stopRad = Math.toRadians(stop);
 
-        String attributes = "stroke=\"" + StringUtils.toHex(style.getLineColor()) + "\" "
-                + "stroke-width=\"" + this.width + "\" fill=\"none\"";
-
-        int xs = (int) (xc + rad * Math.cos(startRad));
-        int ys = (int) (yc - rad * Math.sin(startRad));
-        int xe = (int) (xc + rad * Math.cos(stopRad));
-        int ye = (int) (yc - rad * Math.sin(stopRad));
-
-        sb.append("<path d=\"M").append(xs).append(",").append(ys)
-                .append(" A").append(rad).append(",").append(rad)
-                .append(" 0 0,0 ").append(xe).append(",").append(ye)
-                .append("\" ").append(attributes).append("/>\n");
+        return new int[] {
+            (int) (xc + rad * Math.cos(startRad)),
+            (int) (yc - rad * Math.sin(startRad)),
+            (int) (xc + rad * Math.cos(stopRad)),
+            (int) (yc - rad * Math.sin(stopRad))
+        };
     }
 
     @Override
-    public void scale(double scale) {
-        super.scale(scale);
+    public void scale(double scale, Map<Font, Font> fonts) {
+        super.scale(scale, fonts);
         width *= scale;
     }
 
     private int width;
-    private int startAngle;
+    private final int startAngle;
     private final int extentAngle;
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return start angle in degrees, counterclockwise from the x axis
+     */
+    public int getStartAngle() {
+        return startAngle;
+    }
+
+    /**
+     * @return extent in degrees, negative extents go clockwise
+     */
+    public int getExtentAngle() {
+        return extentAngle;
+    }
 }
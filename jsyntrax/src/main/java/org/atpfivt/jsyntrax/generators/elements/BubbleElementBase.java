@@ -2,21 +2,23 @@ package org.atpfivt.jsyntrax.generators.elements;
 
 import org.atpfivt.jsyntrax.styles.StyleConfig;
 import org.atpfivt.jsyntrax.util.StringUtils;
-import org.atpfivt.jsyntrax.util.Pair;
+
 import java.awt.Color;
 import java.awt.Font;
+import java.util.Map;
 
 public abstract class BubbleElementBase extends Element {
 
-    public BubbleElementBase(Pair<Integer, Integer> start, Pair<Integer, Integer> end, String href,
-                             String text, Pair<Integer, Integer> textPos, Font font, String fontName,
-                             Color textColor, int width, Color fill, String tag) {
-        super(tag);
-        super.setStart(start);
-        super.setEnd(end);
+    /**
+     * @param textY vertical offset of the text, only its magnitude is used
+     */
+    public BubbleElementBase(Geometry geometry, int id, String href,
+                             String text, int textY, Font font, String fontName,
+                             Color textColor, int width, Color fill, int tag) {
+        super(geometry, id, tag);
         this.setHref(href);
         this.setText(text);
-        this.setTextPos(textPos);
+        this.setTextY(textY);
         this.setFont(font);
         this.setFontName(fontName);
         this.setTextColor(textColor);
@@ -24,45 +26,65 @@ public abstract class BubbleElementBase extends Element {
         this.setFill(fill);
     }
 
-    int getX(StyleConfig style) {
-        int x0 = getStart().f;
-        int x1 = getEnd().f;
+    /**
+     * @param dx offset of the drawing
+     * @return x of the text
+     */
+    public int getX(StyleConfig style, int dx) {
+        int x0 = getX0() + dx;
+        int x1 = getX1() + dx;
         return  (x0 + x1) / 2;
     }
 
-    void addXMLText(StringBuilder sb, StyleConfig style) {
-        int y0 = getStart().s;
-        int y1 = getEnd().s;
+    /**
+     * @param dy offset of the drawing
+     * @return y of the text baseline
+     */
+    public int getTextBaseline(StyleConfig style, int dy) {
+        // elements are not scaled if the image is scaled by its viewBox
+        double scale = style.isViewBoxScale() ? 1 : style.getScale();
+        return (getY0() + dy + getY1() + dy) / 2 + (int) (Math.abs(getTextY()) * 0.25 + scale * 2);
+    }
 
-        int x = getX(style);
+    /**
+     * @return attributes of node shadows
+     */
+    public static SVGAttributes getShadowAttributes(StyleConfig style) {
+        return SVGAttributes.of("fill", StringUtils.toHex(style.getShadowFill()),
+                "fill-opacity", StringUtils.fillOpacity(style.getShadowFill()));
+    }
 
-        int y = (y0 + y1) / 2 + (int) (Math.abs(getTextPos().s) * 0.25 + style.getScale() * 2);
+    /**
+     * @return attributes of node shapes
+     */
+    public SVGAttributes getShapeAttributes(StyleConfig style) {
+        return SVGAttributes.of("stroke", StringUtils.toHex(style.getLineColor()),
+                "stroke-width", this.getWidth(),
+                "fill", StringUtils.toHex(this.getFill()),
+                "fill-opacity", StringUtils.fillOpacity(this.getFill()));
+    }
 
-        String txt = StringUtils.escapeXML(getText());
-        if (this.getHref() == null) {
-            sb.append("<text class=\"").append(getFontName()).append("\" x=\"").append(x)
-                    .append("\" y=\"").append(y).append("\">").append(txt).append("</text>\n");
-        } else {
-            String link = StringUtils.escapeXML(this.getHref());
-            sb.append("<a xlink:href=\"").append(link).append("\" target=\"_parent\">")
-                    .append("<text class=\"").append(getFontName()).append(" link\" x=\"").append(x)
-                    .append("\" y=\"").append(y).append("\">").append(txt).append("</text></a>\n");
-        }
+    /**
+     * @return part of the text width to the left of its x, like text-anchor does
+     */
+    public double getAnchor(StyleConfig style) {
+        return 0.5;
     }
 
     @Override
-    public void scale(double scale) {
-        super.scale(scale);
+    public void scale(double scale, Map<Font, Font> fonts) {
+        super.scale(scale, fonts);
         setWidth((int) (getWidth() * scale));
-        getTextPos().f = (int) (getTextPos().f * scale);
-        getTextPos().s = (int) (getTextPos().s * scale);
+        setTextY((int) (getTextY() * scale));
         if (getFont() != null) {
-            setFont(getFont().deriveFont((float) (getFont().getSize() * scale)));
+            // bubbles of a diagram share a few fonts, so each is derived once
+            setFont(fonts.computeIfAbsent(getFont(), f -> f.deriveFont((float) (f.getSize() * scale))));
         }
     }
+
     private String href;
     private String text;
-    private Pair<Integer, Integer> textPos;
+    private int textY;
     private Font font;
     private String fontName;
     private Color textColor;
@@ -85,12 +107,12 @@ public abstract class BubbleElementBase extends Element {
         this.text = text;
     }
 
-    public Pair<Integer, Integer> getTextPos() {
-        return textPos;
+    public int getTextY() {
+        return textY;
     }
 
-    public void setTextPos(Pair<Integer, Integer> textPos) {
-        this.textPos = textPos;
+    public void setTextY(int textY) {
+        this.textY = textY;
     }
 
     public Font getFont() {
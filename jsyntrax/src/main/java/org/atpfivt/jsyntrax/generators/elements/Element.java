@@ -1,64 +1,76 @@
 package org.atpfivt.jsyntrax.generators.elements;
 
-import org.atpfivt.jsyntrax.styles.StyleConfig;
-import org.atpfivt.jsyntrax.util.Pair;
-
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.awt.Font;
+import java.util.Map;
 
 public class Element {
-    public Element(String tag) {
-        tags.add(tag);
+    public Element(Geometry geometry, int x0, int y0, int x1, int y1, int tag) {
+        this(geometry, geometry.add(x0, y0, x1, y1), tag);
     }
 
-    public void setStart(Pair<Integer, Integer> start) {
-        this.start = start;
+    /**
+     * @param id row already added to geometry
+     */
+    public Element(Geometry geometry, int id, int tag) {
+        this.geometry = geometry;
+        this.id = id;
+        this.tag = tag;
     }
 
-    public final Pair<Integer, Integer> getStart() {
-        return start;
+    /**
+     * @return element of the same kind and style at the given coordinates in the same geometry
+     */
+    public Element copy(int x0, int y0, int x1, int y1, int tag) {
+        return new Element(geometry, x0, y0, x1, y1, tag);
     }
 
-    public final Pair<Integer, Integer> getEnd() {
-        return this.end;
+    /**
+     * @return row of the element in its geometry
+     */
+    public final int getId() {
+        return id;
     }
 
-    public void setEnd(Pair<Integer, Integer> end) {
-        this.end = end;
+    public final Geometry getGeometry() {
+        return geometry;
     }
 
-    public final void addTag(String tag) {
-        tags.add(tag);
+    public final int getX0() {
+        return geometry.getX0(id);
     }
 
-    public final void delTag(String tag) {
-        tags.remove(tag);
+    public final int getY0() {
+        return geometry.getY0(id);
     }
 
-    public boolean isTagged(String tag) {
-        if ("all".equals(tag)) {
-            return true;
-        }
-        return tags.contains(tag);
+    public final int getX1() {
+        return geometry.getX1(id);
     }
 
-    public void addShadow(StringBuilder sb, StyleConfig style) { }
-
-    public void toSVG(StringBuilder sb, StyleConfig style) { }
+    public final int getY1() {
+        return geometry.getY1(id);
+    }
 
-    public void scale(double scale) {
-        getStart().f = (int) (getStart().f * scale);
-        getStart().s = (int) (getStart().s * scale);
-        getEnd().f = (int) (getEnd().f * scale);
-        getEnd().s = (int) (getEnd().s * scale);
+    /**
+     * @return tag of the group the element was created in
+     */
+    public final int getTag() {
+        return tag;
     }
 
-    public Optional<String> getAnyTag() {
-        return tags.stream().findAny();
+    /**
+     * @brief draws the element by the visitor of an output, plain elements draw nothing
+     */
+    public void accept(ElementVisitor visitor) { }
+
+    /**
+     * @param fonts fonts derived for the scale so far, shared by all elements scaled at once
+     */
+    public void scale(double scale, Map<Font, Font> fonts) {
+        geometry.scale(id, scale);
     }
 
-    private Pair<Integer, Integer> start = null;
-    private Pair<Integer, Integer> end = null;
-    private final Set<String> tags = new HashSet<>();
+    private final Geometry geometry;
+    private final int id;
+    private final int tag;
 }
@@ -0,0 +1,20 @@
+package org.atpfivt.jsyntrax.generators.elements;
+
+/**
+ * @brief draws elements of every kind, one implementation for every output
+ */
+public interface ElementVisitor {
+    void visitBubble(BubbleElement e);
+
+    void visitBoxBubble(BoxBubbleElement e);
+
+    void visitHexBubble(HexBubbleElement e);
+
+    void visitTitle(TitleElement e);
+
+    void visitOval(OvalElement e);
+
+    void visitLine(LineElement e);
+
+    void visitArc(ArcElement e);
+}
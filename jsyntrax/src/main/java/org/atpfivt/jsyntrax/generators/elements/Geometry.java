@@ -0,0 +1,77 @@
+package org.atpfivt.jsyntrax.generators.elements;
+
+import java.util.Arrays;
+
+/**
+ * @brief coordinates of all elements of a canvas
+ * @details Start and end points are kept in primitive columns indexed by element id,
+ * so moving and scaling elements neither allocates nor boxes.
+ */
+public final class Geometry {
+    private static final int INIT_CAPACITY = 64;
+
+    private int size = 0;
+    private int[] x0 = new int[INIT_CAPACITY];
+    private int[] y0 = new int[INIT_CAPACITY];
+    private int[] x1 = new int[INIT_CAPACITY];
+    private int[] y1 = new int[INIT_CAPACITY];
+
+    /**
+     * @return id of the new row
+     */
+    public int add(int sx, int sy, int ex, int ey) {
+        if (size == x0.length) {
+            int capacity = size * 2;
+            x0 = Arrays.copyOf(x0, capacity);
+            y0 = Arrays.copyOf(y0, capacity);
+            x1 = Arrays.copyOf(x1, capacity);
+            y1 = Arrays.copyOf(y1, capacity);
+        }
+        x0[size] = sx;
+        y0[size] = sy;
+        x1[size] = ex;
+        y1[size] = ey;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getX0(int id) {
+        return x0[id];
+    }
+
+    public int getY0(int id) {
+        return y0[id];
+    }
+
+    public int getX1(int id) {
+        return x1[id];
+    }
+
+    public int getY1(int id) {
+        return y1[id];
+    }
+
+    public void set(int id, int sx, int sy, int ex, int ey) {
+        x0[id] = sx;
+        y0[id] = sy;
+        x1[id] = ex;
+        y1[id] = ey;
+    }
+
+    public void move(int id, int dx, int dy) {
+        x0[id] += dx;
+        y0[id] += dy;
+        x1[id] += dx;
+        y1[id] += dy;
+    }
+
+    public void scale(int id, double scale) {
+        x0[id] = (int) (x0[id] * scale);
+        y0[id] = (int) (y0[id] * scale);
+        x1[id] = (int) (x1[id] * scale);
+        y1[id] = (int) (y1[id] * scale);
+    }
+}
@@ -2,61 +2,85 @@ package org.atpfivt.jsyntrax.generators.elements;
 
 import org.atpfivt.jsyntrax.styles.StyleConfig;
 import org.atpfivt.jsyntrax.util.StringUtils;
-import org.atpfivt.jsyntrax.util.Pair;
+
+import java.awt.Font;
+import java.util.Map;
 
 public class LineElement extends Element {
 
-    public LineElement(Pair<Integer, Integer> start, Pair<Integer, Integer> end,
-                       String arrow, int width, String tag) {
-        super(tag);
-        super.setStart(start);
-        super.setEnd(end);
+    public LineElement(Geometry geometry, int x0, int y0, int x1, int y1,
+                       String arrow, int width, int tag) {
+        super(geometry, x0, y0, x1, y1, tag);
         this.arrow = arrow;
         this.width = width;
     }
 
     @Override
-    public void addShadow(StringBuilder sb, StyleConfig style) {
-
+    public Element copy(int x0, int y0, int x1, int y1, int tag) {
+        return new LineElement(getGeometry(), x0, y0, x1, y1, arrow, width, tag);
     }
 
     @Override
-    public void toSVG(StringBuilder sb, StyleConfig style) {
-        String attributes = "stroke=\"" + StringUtils.toHex(style.getLineColor())
-                + "\" " + "stroke-width=\"" + this.width + "\"";
+    public void accept(ElementVisitor visitor) {
+        visitor.visitLine(this);
+    }
+
+    /**
+     * @return presentation attributes of the line, with the arrow marker if it has an arrow
+     */
+    public SVGAttributes getAttributes(StyleConfig style) {
+        SVGAttributes attributes = SVGAttributes.of("stroke", StringUtils.toHex(style.getLineColor()),
+                "stroke-width", this.width);
+        if (arrow != null) {
+            attributes = attributes.with("marker-end", "url(#arrow)");
+        }
+        return attributes;
+    }
+
+    /**
+     * @return start and end points as {x0, y0, x1, y1}, the end is shortened to fit the arrow
+     */
+    public int[] getEnds() {
+        int x0 = getX0();
+        int y0 = getY0();
+        int x1 = getX1();
+        int y1 = getY1();
 
         if (arrow != null) {
-            attributes += " marker-end=\"url(#arrow)\"";
             if ("first".equals(arrow)) {
                 // swap
-                Pair<Integer, Integer> tmp = super.getStart();
-                super.setStart(super.getEnd());
-                super.setEnd(tmp);
+                x0 = getX1();
+                y0 = getY1();
+                x1 = getX0();
+                y1 = getY0();
             }
-            double len = Math.sqrt(
-                    (super.getEnd().f - super.getStart().f) * (super.getEnd().f - super.getStart().f)
-                            + (super.getEnd().s - super.getStart().s) * (super.getEnd().s - super.getStart().s)
-            );
+            double len = Math.sqrt((x1 - x0) * (x1 - x0) + (y1 - y0) * (y1 - y0));
             len -= 4;
-            double angle = Math.atan2(super.getEnd().s - super.getStart().s, super.getEnd().f - super.getStart().f);
+            double angle = Math.atan2(y1 - y0, x1 - x0);
 
-            super.getEnd().f = (int) (super.getStart().f + len * Math.cos(angle));
-            super.getEnd().s = (int) (super.getStart().s + len * Math.sin(angle));
+            x1 = (int) (x0 + len * Math.cos(angle));
+            y1 = (int) (y0 + len * Math.sin(angle));
         }
-        sb.append("<line ")
-                .append("x1=\"").append(super.getStart().f).append("\" ")
-                .append("y1=\"").append(super.getStart().s).append("\" ")
-                .append("x2=\"").append(super.getEnd().f).append("\" ")
-                .append("y2=\"").append(super.getEnd().s).append("\" ")
-                .append(attributes).append(" />\n");
+        return new int[] {x0, y0, x1, y1};
     }
 
     @Override
-    public void scale(double scale) {
-        super.scale(scale);
+    public void scale(double scale, Map<Font, Font> fonts) {
+        super.scale(scale, fonts);
         width *= scale;
     }
 
     private final String arrow;
     private int width;
+
+    /**
+     * @return end the arrow is drawn at, "first" or "last", or null if the line has no arrow
+     */
+    public String getArrow() {
+        return arrow;
+    }
+
+    public int getWidth() {
+        return width;
+    }
 }
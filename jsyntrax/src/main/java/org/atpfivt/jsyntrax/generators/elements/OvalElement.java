@@ -2,49 +2,43 @@ package org.atpfivt.jsyntrax.generators.elements;
 
 import org.atpfivt.jsyntrax.styles.StyleConfig;
 import org.atpfivt.jsyntrax.util.StringUtils;
-import org.atpfivt.jsyntrax.util.Pair;
+
 import java.awt.Color;
+import java.awt.Font;
+import java.util.Map;
 
 /**
  * @details Need only for bullets
  */
 public class OvalElement extends Element {
-    public OvalElement(Pair<Integer, Integer> start, Pair<Integer, Integer> end, int width, Color fill, String tag) {
-        super(tag);
-        super.setStart(start);
-        super.setEnd(end);
+    public OvalElement(Geometry geometry, int x0, int y0, int x1, int y1, int width, Color fill, int tag) {
+        super(geometry, x0, y0, x1, y1, tag);
         this.setWidth(width);
         this.setFill(fill);
     }
 
     @Override
-    public void addShadow(StringBuilder sb, StyleConfig style) {
-
+    public Element copy(int x0, int y0, int x1, int y1, int tag) {
+        return new OvalElement(getGeometry(), x0, y0, x1, y1, width, fill, tag);
     }
 
     @Override
-    public void toSVG(StringBuilder sb, StyleConfig style) {
-        int x0 = super.getStart().f;
-        int y0 = super.getStart().s;
-        int x1 = super.getEnd().f;
-        int y1 = super.getEnd().s;
-
-        String attributes = "stroke=\"" + StringUtils.toHex(style.getLineColor()) + "\" "
-                + "stroke-width=\"" + this.getWidth() + "\" "
-                + "fill=\"" + StringUtils.toHex(this.getFill()) + "\"";
-
-        int xc = (x0 + x1) / 2;
-        int yc = (y0 + y1) / 2;
-        int rad = (x1 - x0) / 2;
+    public void accept(ElementVisitor visitor) {
+        visitor.visitOval(this);
+    }
 
-        sb.append("<circle cx=\"").append(xc).append("\" cy=\"").append(yc)
-                .append("\" r=\"").append(rad).append("\" ")
-                .append(attributes).append("/>\n");
+    /**
+     * @return presentation attributes of the circle
+     */
+    public SVGAttributes getAttributes(StyleConfig style) {
+        return SVGAttributes.of("stroke", StringUtils.toHex(style.getLineColor()),
+                "stroke-width", this.getWidth(),
+                "fill", StringUtils.toHex(this.getFill()));
     }
 
     @Override
-    public void scale(double scale) {
-        super.scale(scale);
+    public void scale(double scale, Map<Font, Font> fonts) {
+        super.scale(scale, fonts);
         setWidth((int) (getWidth() * scale));
     }
 
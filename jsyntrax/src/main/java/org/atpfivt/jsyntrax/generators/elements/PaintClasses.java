@@ -0,0 +1,101 @@
+package org.atpfivt.jsyntrax.generators.elements;
+
+import org.atpfivt.jsyntrax.util.StringUtils;
+
+import java.awt.Color;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * @brief presentation attributes shared by elements
+ * @details In compact mode every distinct set of attributes becomes a CSS class,
+ * and elements refer to it by name instead of repeating the attributes.
+ * With shadow filters the shadow of a node is drawn by a filter shared by all nodes of the same
+ * outline width, instead of a second copy of the node shape.
+ */
+public final class PaintClasses {
+    private final boolean compact;
+    private final boolean shadowFilter;
+    // attributes to class name, in order of first use
+    private final Map<SVGAttributes, String> classes = new LinkedHashMap<>();
+    // outline widths of nodes with shadow filters
+    private final TreeSet<Integer> shadowWidths = new TreeSet<>();
+
+    public PaintClasses(boolean compact) {
+        this(compact, false);
+    }
+
+    public PaintClasses(boolean compact, boolean shadowFilter) {
+        this.compact = compact;
+        this.shadowFilter = shadowFilter;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public boolean isShadowFilter() {
+        return shadowFilter;
+    }
+
+    /**
+     * @param width outline width of the node
+     * @return value of the filter attribute drawing the shadow of the node
+     */
+    public String getShadowFilter(int width) {
+        shadowWidths.add(width);
+        return "url(#shadow" + width + ")";
+    }
+
+    /**
+     * @param attributes presentation attributes of an element
+     * @return the attributes written as SVG, or a reference to their class in compact mode
+     */
+    public String get(SVGAttributes attributes) {
+        if (!compact) {
+            return attributes.toString();
+        }
+        String name = classes.computeIfAbsent(attributes, a -> "p" + classes.size());
+        return "class=\"" + name + "\"";
+    }
+
+    /**
+     * @brief writes CSS rules of all classes used so far
+     */
+    public void toCSS(StringBuilder sb) {
+        for (Map.Entry<SVGAttributes, String> c : classes.entrySet()) {
+            sb.append('.').append(c.getValue()).append(" {");
+            SVGAttributes attributes = c.getKey();
+            for (int i = 0; i < attributes.size(); ++i) {
+                sb.append(attributes.getName(i)).append(':').append(attributes.getValue(i)).append("; ");
+            }
+            sb.append("}\n");
+        }
+    }
+
+    /**
+     * @brief writes filters of all shadows used so far
+     * @details The shadow is the node shape without its outline, moved by the outline width plus one.
+     */
+    public void toDefs(StringBuilder sb, Color shadowFill) {
+        for (int width : shadowWidths) {
+            sb.append("<filter id=\"shadow").append(width)
+                    .append("\" x=\"-0.1\" y=\"-0.1\" width=\"1.5\" height=\"1.5\">\n");
+            if (width > 0) {
+                sb.append("<feMorphology in=\"SourceAlpha\" operator=\"erode\" radius=\"")
+                        .append(StringUtils.formatNumber(width / 2.0)).append("\"/>\n");
+                sb.append("<feOffset dx=\"");
+            } else {
+                sb.append("<feOffset in=\"SourceAlpha\" dx=\"");
+            }
+            sb.append(width + 1).append("\" dy=\"").append(width + 1)
+                    .append("\" result=\"shape\"/>\n");
+            sb.append("<feFlood flood-color=\"").append(StringUtils.toHex(shadowFill))
+                    .append("\" flood-opacity=\"").append(StringUtils.fillOpacity(shadowFill)).append("\"/>\n");
+            sb.append("<feComposite in2=\"shape\" operator=\"in\"/>\n");
+            sb.append("<feMerge><feMergeNode/><feMergeNode in=\"SourceGraphic\"/></feMerge>\n");
+            sb.append("</filter>\n");
+        }
+    }
+}
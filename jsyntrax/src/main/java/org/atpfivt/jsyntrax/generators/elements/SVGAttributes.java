@@ -0,0 +1,86 @@
+package org.atpfivt.jsyntrax.generators.elements;
+
+import org.atpfivt.jsyntrax.util.StringUtils;
+
+import java.util.Arrays;
+
+/**
+ * @brief attributes of an SVG element as name and value pairs, in order
+ * @details Elements make their presentation attributes once, and SVG text, CSS classes of compact mode
+ * and DOM trees are all made of the pairs. Attributes are immutable, so they can be keys of classes.
+ */
+public final class SVGAttributes {
+    public static final SVGAttributes NONE = new SVGAttributes(new String[0]);
+
+    // names at even indexes, each followed by its value
+    private final String[] pairs;
+
+    private SVGAttributes(String[] pairs) {
+        this.pairs = pairs;
+    }
+
+    /**
+     * @param namesAndValues names each followed by its value
+     */
+    public static SVGAttributes of(Object... namesAndValues) {
+        if (namesAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Attribute without a value");
+        }
+        String[] pairs = new String[namesAndValues.length];
+        for (int i = 0; i < pairs.length; ++i) {
+            pairs[i] = String.valueOf(namesAndValues[i]);
+        }
+        return new SVGAttributes(pairs);
+    }
+
+    /**
+     * @return these attributes followed by one more
+     */
+    public SVGAttributes with(String name, Object value) {
+        String[] more = Arrays.copyOf(pairs, pairs.length + 2);
+        more[pairs.length] = name;
+        more[pairs.length + 1] = String.valueOf(value);
+        return new SVGAttributes(more);
+    }
+
+    public int size() {
+        return pairs.length / 2;
+    }
+
+    public String getName(int i) {
+        return pairs[2 * i];
+    }
+
+    public String getValue(int i) {
+        return pairs[2 * i + 1];
+    }
+
+    /**
+     * @brief writes the attributes like stroke="#000000" stroke-width="2", values are escaped
+     */
+    public void toSVG(StringBuilder sb) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(pairs[i]).append("=\"").append(StringUtils.escapeXML(pairs[i + 1])).append('"');
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        toSVG(sb);
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SVGAttributes && Arrays.equals(pairs, ((SVGAttributes) o).pairs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(pairs);
+    }
+}
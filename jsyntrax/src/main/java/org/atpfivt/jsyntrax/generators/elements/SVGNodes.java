@@ -0,0 +1,43 @@
+package org.atpfivt.jsyntrax.generators.elements;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * @brief builds SVG documents as DOM trees
+ * @details Presentation attributes are the same SVGAttributes that are written to SVG text.
+ */
+public final class SVGNodes {
+    public static final String SVG_NS = "http://www.w3.org/2000/svg";
+    public static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+    public static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
+    private SVGNodes() { }
+
+    /**
+     * @return new SVG element appended to the parent
+     */
+    public static Element append(Node parent, String name, SVGAttributes attributes) {
+        Document doc = parent instanceof Document ? (Document) parent : parent.getOwnerDocument();
+        Element e = doc.createElementNS(SVG_NS, name);
+        set(e, attributes);
+        parent.appendChild(e);
+        return e;
+    }
+
+    public static void set(Element e, SVGAttributes attributes) {
+        for (int i = 0; i < attributes.size(); ++i) {
+            e.setAttributeNS(null, attributes.getName(i), attributes.getValue(i));
+        }
+    }
+
+    /**
+     * @brief sets attributes given as name and value pairs
+     */
+    public static void set(Element e, Object... namesAndValues) {
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            e.setAttributeNS(null, (String) namesAndValues[i], String.valueOf(namesAndValues[i + 1]));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.atpfivt.jsyntrax.generators.elements;
+
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.util.StringUtils;
+
+/**
+ * @brief single path collecting consecutive line segments and arcs
+ * @details Connected segments continue the current subpath, others start a new one.
+ * The path is written out when segments with other attributes come or when it is closed,
+ * so elements drawn in between keep their order.
+ */
+public final class SVGPath {
+    private final StringBuilder out;
+    private final PaintClasses paints;
+    private final StringBuilder d = new StringBuilder();
+    private SVGAttributes attributes;
+    private int penX;
+    private int penY;
+
+    public SVGPath(StringBuilder out, PaintClasses paints) {
+        this.out = out;
+        this.paints = paints;
+    }
+
+    /**
+     * @return attributes of a line drawn with the line color
+     */
+    public static SVGAttributes getStrokeAttributes(StyleConfig style, int width) {
+        return SVGAttributes.of("stroke", StringUtils.toHex(style.getLineColor()),
+                "stroke-width", width, "fill", "none");
+    }
+
+    public void lineTo(SVGAttributes attrs, int x0, int y0, int x1, int y1) {
+        if (attrs.equals(attributes) && penX == x1 && penY == y1 && (penX != x0 || penY != y0)) {
+            lineTo(attrs, x1, y1, x0, y0);
+            return;
+        }
+        moveTo(attrs, x0, y0);
+        if (y0 == y1) {
+            d.append(" H").append(x1);
+        } else if (x0 == x1) {
+            d.append(" V").append(y1);
+        } else {
+            d.append(" L").append(x1).append(',').append(y1);
+        }
+        penX = x1;
+        penY = y1;
+    }
+
+    /**
+     * @brief adds a counterclockwise arc from (xs, ys) to (xe, ye)
+     */
+    public void arcTo(SVGAttributes attrs, int xs, int ys, int rad, int xe, int ye) {
+        boolean reverse = attrs.equals(attributes) && penX == xe && penY == ye;
+        if (reverse) {
+            moveTo(attrs, xe, ye);
+        } else {
+            moveTo(attrs, xs, ys);
+        }
+        d.append(" A").append(rad).append(',').append(rad)
+                .append(reverse ? " 0 0,1 " : " 0 0,0 ");
+        penX = reverse ? xs : xe;
+        penY = reverse ? ys : ye;
+        d.append(penX).append(',').append(penY);
+    }
+
+    private void moveTo(SVGAttributes attrs, int x, int y) {
+        if (!attrs.equals(attributes)) {
+            close();
+            attributes = attrs;
+        } else if (penX == x && penY == y) {
+            return;
+        }
+        if (d.length() > 0) {
+            d.append(' ');
+        }
+        d.append('M').append(x).append(',').append(y);
+        penX = x;
+        penY = y;
+    }
+
+    /**
+     * @brief writes out the collected path
+     */
+    public void close() {
+        if (d.length() > 0) {
+            out.append("<path d=\"").append(d).append("\" ")
+                    .append(paints.get(attributes)).append("/>\n");
+            d.setLength(0);
+        }
+        attributes = null;
+    }
+}
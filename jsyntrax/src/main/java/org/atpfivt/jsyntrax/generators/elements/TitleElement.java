@@ -1,24 +1,32 @@
 package org.atpfivt.jsyntrax.generators.elements;
 
-import org.atpfivt.jsyntrax.generators.SVGCanvasBuilder;
 import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.styles.TitlePosition;
 import org.atpfivt.jsyntrax.util.Pair;
 
 import java.awt.Color;
-import java.awt.Font;
 
 public class TitleElement extends BubbleElementBase {
-    public TitleElement(String text, Font textFont, String fontName, String tag) {
-
-        super(new Pair<>(0, 0), SVGCanvasBuilder.getTextSize(text, textFont),
-                null, text, new Pair<>(0, 0), null, fontName, new Color(0, 0, 0),
+    /**
+     * @param size width and height of the title text box
+     */
+    public TitleElement(Geometry geometry, Pair<Integer, Integer> size, String text, String fontName, int tag) {
+        super(geometry, geometry.add(0, 0, size.f, size.s),
+                null, text, 0, null, fontName, new Color(0, 0, 0),
                 0, new Color(255, 255, 255), tag);
     }
 
     @Override
-    int getX(StyleConfig style) {
-        int x0 = getStart().f;
-        int x1 = getEnd().f;
+    public Element copy(int x0, int y0, int x1, int y1, int tag) {
+        TitleElement e = new TitleElement(getGeometry(), new Pair<>(x1 - x0, y1 - y0), getText(), getFontName(), tag);
+        getGeometry().set(e.getId(), x0, y0, x1, y1);
+        return e;
+    }
+
+    @Override
+    public int getX(StyleConfig style, int dx) {
+        int x0 = getX0() + dx;
+        int x1 = getX1() + dx;
         int x = (x0 + x1) / 2;
         switch (style.getTitlePos()) {
             case bl:
@@ -38,13 +46,19 @@ public class TitleElement extends BubbleElementBase {
     }
 
     @Override
-    public void addShadow(StringBuilder sb, StyleConfig style) {
-
+    public double getAnchor(StyleConfig style) {
+        TitlePosition pos = style.getTitlePos();
+        if (pos == TitlePosition.bl || pos == TitlePosition.tl) {
+            return 0;
+        }
+        if (pos == TitlePosition.br || pos == TitlePosition.tr) {
+            return 1;
+        }
+        return 0.5;
     }
 
     @Override
-    public void toSVG(StringBuilder sb, StyleConfig style) {
-        // Add text
-        addXMLText(sb, style);
+    public void accept(ElementVisitor visitor) {
+        visitor.visitTitle(this);
     }
 }
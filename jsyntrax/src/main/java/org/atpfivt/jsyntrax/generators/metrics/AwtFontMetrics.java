@@ -0,0 +1,21 @@
+package org.atpfivt.jsyntrax.generators.metrics;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * @brief text sizes measured with installed fonts
+ */
+public final class AwtFontMetrics implements FontMetricsProvider {
+    public static final AwtFontMetrics INSTANCE = new AwtFontMetrics();
+
+    private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+    private AwtFontMetrics() { }
+
+    @Override
+    public Rectangle2D getStringBounds(String text, Font font) {
+        return font.getStringBounds(text, RENDER_CONTEXT);
+    }
+}
@@ -0,0 +1,14 @@
+package org.atpfivt.jsyntrax.generators.metrics;
+
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * @brief source of text sizes for layout
+ */
+public interface FontMetricsProvider {
+    /**
+     * @return logical bounds of the text relative to its baseline, as Font.getStringBounds does
+     */
+    Rectangle2D getStringBounds(String text, Font font);
+}
@@ -0,0 +1,161 @@
+package org.atpfivt.jsyntrax.generators.metrics;
+
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @brief text sizes computed from bundled advance width tables
+ * @details Tables keep metrics of the fonts used by the default style in 1/1000 of font size,
+ * so layout does not depend on installed fonts and no font is loaded.
+ * Unknown serif families use Times metrics, any other family uses Sans metrics.
+ */
+public final class TableFontMetrics implements FontMetricsProvider {
+    public static final String RESOURCE = "/font_metrics.txt";
+
+    private static final double UNITS = 1000;
+    private static final String[] STYLES = {"plain", "bold", "italic", "bolditalic"};
+
+    private final Map<String, Face> faces;
+
+    private TableFontMetrics(Map<String, Face> faces) {
+        this.faces = faces;
+    }
+
+    public static TableFontMetrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @Override
+    public Rectangle2D getStringBounds(String text, Font font) {
+        Face face = getFace(font);
+        double size = font.getSize2D();
+        double width = 0;
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            width += face.getAdvance(cp);
+            i += Character.charCount(cp);
+        }
+        return new Rectangle2D.Double(0, -face.ascent * size / UNITS,
+                width * size / UNITS, face.height * size / UNITS);
+    }
+
+    private Face getFace(Font font) {
+        String style = STYLES[font.getStyle() & (Font.BOLD | Font.ITALIC)];
+        String family = font.getName().toLowerCase(Locale.ROOT);
+        Face face = faces.get(key(family, style));
+        if (face != null) {
+            return face;
+        }
+        boolean serif = family.contains("times")
+                || family.contains("serif") && !family.contains("sans");
+        return faces.get(key(serif ? "times" : "sans", style));
+    }
+
+    private static String key(String family, String style) {
+        return family + " " + style;
+    }
+
+    static TableFontMetrics load(InputStream in) throws IOException {
+        Map<String, Face> faces = new HashMap<>();
+        Face face = null;
+        int lineNo = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ++lineNo;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] tokens = line.split("\\s+");
+                try {
+                    if ("face".equals(tokens[0])) {
+                        face = new Face();
+                        String family = line.substring(tokens[0].length(), line.lastIndexOf(' ')).trim();
+                        faces.put(key(family.toLowerCase(Locale.ROOT), tokens[tokens.length - 1]), face);
+                    } else if (face == null) {
+                        throw new IOException("Metrics before face at line " + lineNo);
+                    } else {
+                        face.parse(tokens);
+                    }
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    throw new IOException("Invalid font metrics at line " + lineNo, e);
+                }
+            }
+        }
+        for (String style : STYLES) {
+            if (!faces.containsKey(key("sans", style)) || !faces.containsKey(key("times", style))) {
+                throw new IOException("Font metrics miss Sans or Times " + style);
+            }
+        }
+        return new TableFontMetrics(faces);
+    }
+
+    private static final class Holder {
+        private static final TableFontMetrics INSTANCE;
+
+        static {
+            try (InputStream in = TableFontMetrics.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IOException("Resource " + RESOURCE + " not found");
+                }
+                INSTANCE = load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @brief metrics of one font face
+     */
+    private static final class Face {
+        private double ascent;
+        private double height;
+        private double defaultAdvance;
+        private final List<Integer> rangeStarts = new ArrayList<>();
+        private final List<double[]> rangeAdvances = new ArrayList<>();
+
+        private void parse(String[] tokens) throws IOException {
+            if ("ascent".equals(tokens[0])) {
+                ascent = Double.parseDouble(tokens[1]);
+            } else if ("height".equals(tokens[0])) {
+                height = Double.parseDouble(tokens[1]);
+            } else if ("default".equals(tokens[0])) {
+                defaultAdvance = Double.parseDouble(tokens[1]);
+            } else if ("range".equals(tokens[0])) {
+                rangeStarts.add(Integer.parseInt(tokens[1]));
+                double[] advances = new double[tokens.length - 2];
+                for (int i = 0; i < advances.length; ++i) {
+                    advances[i] = Double.parseDouble(tokens[i + 2]);
+                }
+                rangeAdvances.add(advances);
+            } else {
+                throw new IOException("Unknown font metrics key " + tokens[0]);
+            }
+        }
+
+        private double getAdvance(int cp) {
+            for (int i = 0; i < rangeStarts.size(); ++i) {
+                int offset = cp - rangeStarts.get(i);
+                double[] advances = rangeAdvances.get(i);
+                if (offset >= 0 && offset < advances.length) {
+                    return advances[offset];
+                }
+            }
+            return defaultAdvance;
+        }
+    }
+}
@@ -1,33 +1,67 @@
 package org.atpfivt.jsyntrax.groovy_parser
 
+import groovy.transform.ThreadInterrupt
 import org.atpfivt.jsyntrax.Configuration
+import org.atpfivt.jsyntrax.Limits
+import org.atpfivt.jsyntrax.exceptions.LimitExceededException
 import org.atpfivt.jsyntrax.units.Unit
 import org.codehaus.groovy.control.CompilationFailedException
 import org.codehaus.groovy.control.CompilerConfiguration
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer
 import org.codehaus.groovy.control.customizers.SecureASTCustomizer
+import org.codehaus.groovy.runtime.InvokerHelper
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
 
 class Parser {
+    // compiled scripts kept for repeated specs
+    private static final int CACHE_CAPACITY = 256
+
+    // the shell only compiles, every script runs with its own binding
+    private static final GroovyShell SHELL = createShell()
+    // script classes by hash of the script text, the least recently used are evicted
+    private static final Map<String, Class<? extends Script>> SCRIPTS =
+            new LinkedHashMap<String, Class<? extends Script>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Class<? extends Script>> eldest) {
+                    return size() > CACHE_CAPACITY
+                }
+            }
+    // interrupts scripts running out of time
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor({ Runnable r ->
+        Thread t = new Thread(r, "script-timeout")
+        t.setDaemon(true)
+        return t
+    })
 
     private final String scriptText
+    private final Class<? extends Script> scriptClass
     private final Unit result
     private final String title
 
     Parser(String scriptText) throws CompilationFailedException {
-        this.scriptText = scriptText
-        final SecureASTCustomizer secure = new SecureASTCustomizer()
-        secure.with {
-            indirectImportCheckEnabled = true
+        this(scriptText, Limits.NONE)
+    }
 
-            importsWhitelist = ['java.lang.Object']
-        }
-        def config = new CompilerConfiguration()
-        config.setScriptBaseClass(SyntraxScript.class.name)
-        config.addCompilationCustomizers(secure)
+    /**
+     * @throws LimitExceededException the script runs out of the limits
+     */
+    Parser(String scriptText, Limits limits) throws CompilationFailedException {
+        this.scriptText = scriptText
+        scriptClass = compile(scriptText)
         def sharedData = new Binding()
-        def shell = new GroovyShell(this.class.classLoader, sharedData, config)
-        shell.setVariable("None", null)
-        def script = shell.parse(scriptText)
-        result = script.run() as Unit
+        sharedData.setVariable("None", null)
+        def script = InvokerHelper.createScript(scriptClass, sharedData) as SyntraxScript
+        script.setLimits(limits)
+        result = run(script, limits) as Unit
+        if (result != null) {
+            limits.checkUnit(result)
+        }
         title = script.title
     }
 
@@ -38,4 +72,84 @@ class Parser {
     String getTitle() {
         title
     }
+
+    /**
+     * @return compiled class of the script, shared by parsers of the same text
+     */
+    Class<? extends Script> getScriptClass() {
+        scriptClass
+    }
+
+    /**
+     * @brief runs the script, interrupting it when its time is out
+     * @details Compiled scripts check for interrupts in loops and calls, functions of SyntraxScript
+     * check the deadline themselves.
+     */
+    private static Object run(SyntraxScript script, Limits limits) {
+        if (limits.timeout == null) {
+            return script.run()
+        }
+        Thread thread = Thread.currentThread()
+        // guards the interrupt, so it never comes after the script is over
+        def state = [running: true]
+        ScheduledFuture<?> timeout = TIMER.schedule({
+            synchronized (state) {
+                if (state.running) {
+                    state.running = false
+                    thread.interrupt()
+                }
+            }
+        } as Runnable, limits.timeout.toNanos(), TimeUnit.NANOSECONDS)
+        try {
+            return script.run()
+        } catch (InterruptedException e) {
+            throw new LimitExceededException(LimitExceededException.Limit.time, limits.timeout.toMillis())
+        } finally {
+            timeout.cancel(false)
+            synchronized (state) {
+                if (!state.running) {
+                    // the interrupt of the timeout is not for the caller
+                    Thread.interrupted()
+                }
+                state.running = false
+            }
+        }
+    }
+
+    private static Class<? extends Script> compile(String scriptText) throws CompilationFailedException {
+        String key = hash(scriptText)
+        synchronized (SCRIPTS) {
+            def cached = SCRIPTS.get(key)
+            if (cached != null) {
+                return cached
+            }
+        }
+        // a script compiled twice by concurrent parsers is harmless, one of the classes is kept
+        Class<? extends Script> compiled = SHELL.parse(scriptText).getClass()
+        // the class loader would keep every script, the cache above holds the ones in use
+        SHELL.classLoader.clearCache()
+        synchronized (SCRIPTS) {
+            SCRIPTS.put(key, compiled)
+        }
+        return compiled
+    }
+
+    private static String hash(String scriptText) {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(scriptText.getBytes(StandardCharsets.UTF_8))
+        return digest.encodeHex().toString()
+    }
+
+    private static GroovyShell createShell() {
+        final SecureASTCustomizer secure = new SecureASTCustomizer()
+        secure.with {
+            indirectImportCheckEnabled = true
+
+            importsWhitelist = ['java.lang.Object']
+        }
+        def config = new CompilerConfiguration()
+        config.setScriptBaseClass(SyntraxScript.class.name)
+        // scripts can be stopped in loops when their time is out
+        config.addCompilationCustomizers(secure, new ASTTransformationCustomizer(ThreadInterrupt))
+        return new GroovyShell(Parser.class.classLoader, new Binding(), config)
+    }
 }
@@ -1,7 +1,9 @@
 package org.atpfivt.jsyntrax.groovy_parser
 
 import org.atpfivt.jsyntrax.Configuration
+import org.atpfivt.jsyntrax.Limits
 import org.atpfivt.jsyntrax.units.Unit
+import org.atpfivt.jsyntrax.units.UnitPool
 import org.atpfivt.jsyntrax.units.nodes.Node
 import org.atpfivt.jsyntrax.units.nodes.NoneNode
 import org.atpfivt.jsyntrax.units.tracks.Choice
@@ -18,13 +20,25 @@ import org.atpfivt.jsyntrax.units.tracks.stack.Stack
 class SyntraxScript extends Script {
   Unit node
   String title
+  // equal nodes and tracks of the script are shared
+  private final UnitPool pool = new UnitPool()
+  private Limits limits = Limits.NONE
+  private long deadline = Limits.NO_DEADLINE
+
+  /**
+   * @brief limits the units made from now on, the timeout starts now
+   */
+  void setLimits(Limits limits) {
+    this.limits = limits
+    this.deadline = limits.getDeadline()
+  }
 
-  static ArrayList<Unit> unitsToString(Object... units) {
+  ArrayList<Unit> unitsToString(Object... units) {
     for (i in 0..<units.length) {
       if (units[i] == null) {
-        units[i] = new NoneNode()
+        units[i] = pool.intern(new NoneNode())
       } else if (!(units[i] instanceof Track)) {
-        units[i] = new Node(units[i].toString())
+        units[i] = pool.node(units[i].toString())
       }
     }
 
@@ -37,39 +51,49 @@ class SyntraxScript extends Script {
   }
 
   Line line(Object... units) {
-    return node = new Line(unitsToString(units) as ArrayList<Unit>)
+    return node = made(pool.intern(new Line(unitsToString(units) as ArrayList<Unit>)))
   }
 
   Loop loop(Object... units) {
-    return node = new Loop(unitsToString(units) as ArrayList<Unit>)
+    return node = made(pool.intern(new Loop(unitsToString(units) as ArrayList<Unit>)))
   }
 
   Toploop toploop(Object... units) {
-    return node = new Toploop(unitsToString(units) as ArrayList<Unit>)
+    return node = made(pool.intern(new Toploop(unitsToString(units) as ArrayList<Unit>)))
   }
 
   Choice choice(Object... units) {
-    return node = new Choice(unitsToString(units) as ArrayList<Unit>)
+    return node = made(pool.intern(new Choice(unitsToString(units) as ArrayList<Unit>)))
   }
 
   Opt opt(Object... units) {
-    return node = new Opt([line(units)] as ArrayList<Unit>)
+    return node = made(pool.intern(new Opt([line(units)] as ArrayList<Unit>)))
   }
 
   Optx optx(Object... units) {
-    return node = new Optx([line(units)] as ArrayList<Unit>)
+    return node = made(pool.intern(new Optx([line(units)] as ArrayList<Unit>)))
   }
 
   Stack stack(Object... units) {
-    return node = new Stack(unitsToString(units) as ArrayList<Unit>)
+    return node = made(pool.intern(new Stack(unitsToString(units) as ArrayList<Unit>)))
   }
 
   Indentstack indentstack(int indent, Object... units) {
-    return node = new Indentstack(indent, unitsToString(units) as ArrayList<Unit>)
+    return node = made(pool.intern(new Indentstack(indent, unitsToString(units) as ArrayList<Unit>)))
   }
 
   Rightstack rightstack(Object... units) {
-    return node = new Rightstack(unitsToString(units) as ArrayList<Unit>)
+    return node = made(pool.intern(new Rightstack(unitsToString(units) as ArrayList<Unit>)))
+  }
+
+  /**
+   * @return the track, after checking the limits of the script
+   */
+  private <T extends Track> T made(T track) {
+    limits.checkTime(deadline)
+    limits.checkUnitCount(pool.size())
+    limits.checkUnit(track)
+    return track
   }
 
   Configuration jsyntrax(Track track,
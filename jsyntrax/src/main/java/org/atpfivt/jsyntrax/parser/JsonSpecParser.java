@@ -0,0 +1,494 @@
+package org.atpfivt.jsyntrax.parser;
+
+import org.atpfivt.jsyntrax.Configuration;
+import org.atpfivt.jsyntrax.Limits;
+import org.atpfivt.jsyntrax.exceptions.JsonSpecException;
+import org.atpfivt.jsyntrax.exceptions.LoopNotTwoArgsException;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.UnitPool;
+import org.atpfivt.jsyntrax.units.nodes.NoneNode;
+import org.atpfivt.jsyntrax.units.tracks.Choice;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.atpfivt.jsyntrax.units.tracks.Track;
+import org.atpfivt.jsyntrax.units.tracks.loop.Loop;
+import org.atpfivt.jsyntrax.units.tracks.loop.Toploop;
+import org.atpfivt.jsyntrax.units.tracks.opt.Opt;
+import org.atpfivt.jsyntrax.units.tracks.opt.Optx;
+import org.atpfivt.jsyntrax.units.tracks.stack.Indentstack;
+import org.atpfivt.jsyntrax.units.tracks.stack.Rightstack;
+import org.atpfivt.jsyntrax.units.tracks.stack.Stack;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @brief parser of diagram specs written as JSON, nothing is evaluated
+ * @details A track is an object with one of the keys named as the SyntraxScript functions,
+ * its array holds the units of the track: strings for nodes, null for None and objects for nested tracks,
+ * like {"line": ["a", {"opt": ["b"]}, null]}. Indentstack has the key "indent" as well.
+ * The track of the whole diagram may also have the keys "title" and "url_map".
+ * Each track makes the same units as the function of the same name in a script.
+ * The JSON is read in one pass from a stream and open tracks are kept on an explicit stack,
+ * so the time is linear in the size of the spec and any depth of nesting fits the stack.
+ */
+public final class JsonSpecParser {
+    private static final List<String> TRACKS = List.of(
+            "line", "loop", "toploop", "choice", "opt", "optx", "stack", "rightstack", "indentstack");
+    private static final int BUFFER_SIZE = 8192;
+    private static final int UNICODE_DIGITS = 4;
+    private static final int HEX = 16;
+    // byte order mark, written at the start of JSON by some Windows tools
+    private static final char BOM = '\uFEFF';
+
+    private final Lexer lexer;
+    private final Limits limits;
+    private final long deadline;
+    // equal nodes and tracks of the spec are shared, as in SyntraxScript
+    private final UnitPool pool = new UnitPool();
+    private String title;
+    private Configuration configuration;
+
+    private JsonSpecParser(Reader reader, Limits limits) {
+        this.lexer = new Lexer(reader);
+        this.limits = limits;
+        this.deadline = limits.getDeadline();
+    }
+
+    public static JsonSpecParser parse(Reader reader) throws IOException, JsonSpecException {
+        return parse(reader, Limits.NONE);
+    }
+
+    /**
+     * @throws org.atpfivt.jsyntrax.exceptions.LimitExceededException the spec is out of the limits
+     */
+    public static JsonSpecParser parse(Reader reader, Limits limits) throws IOException, JsonSpecException {
+        JsonSpecParser parser = new JsonSpecParser(reader, limits);
+        parser.parseDocument();
+        return parser;
+    }
+
+    public Configuration getNode() {
+        return configuration;
+    }
+
+    /**
+     * @return title of the spec or null if it has none
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    private void parseDocument() throws IOException, JsonSpecException {
+        ArrayDeque<Frame> frames = new ArrayDeque<>();
+        lexer.next();
+        frames.push(openTrack(true));
+        while (true) {
+            Frame frame = frames.peek();
+            if (frame.units != null && !frame.unitsClosed) {
+                if (readUnits(frame)) {
+                    frames.push(openTrack(false));
+                }
+                continue;
+            }
+            if (readMembers(frame)) {
+                continue;
+            }
+            frames.pop();
+            Track track = track(frame);
+            if (!frames.isEmpty()) {
+                frames.peek().units.add(track);
+                continue;
+            }
+            if (lexer.kind != Kind.eof) {
+                throw lexer.error("expected the end of the spec");
+            }
+            configuration = frame.urlMap == null ? track.getConfiguration() : new Configuration(track, frame.urlMap);
+            limits.checkUnit(configuration);
+            return;
+        }
+    }
+
+    private Frame openTrack(boolean top) throws IOException, JsonSpecException {
+        Frame frame = new Frame(top, lexer.line, lexer.column);
+        expect(Kind.openObject, "'{' of a track");
+        return frame;
+    }
+
+    /**
+     * @brief reads members of the track object up to its units or its end
+     * @return true if the array of units is opened, false if the object is closed
+     */
+    private boolean readMembers(Frame frame) throws IOException, JsonSpecException {
+        while (true) {
+            if (lexer.kind == Kind.closeObject) {
+                lexer.next();
+                return false;
+            }
+            if (frame.hasMembers) {
+                expect(Kind.comma, "',' or '}'");
+            }
+            frame.hasMembers = true;
+            if (lexer.kind != Kind.string) {
+                throw lexer.error("expected a key");
+            }
+            String key = lexer.value;
+            lexer.next();
+            expect(Kind.colon, "':'");
+            if (TRACKS.contains(key)) {
+                if (frame.name != null) {
+                    throw lexer.error("track is both " + frame.name + " and " + key);
+                }
+                frame.name = key;
+                expect(Kind.openArray, "'[' of units");
+                frame.units = new ArrayList<>();
+                return true;
+            } else if ("indent".equals(key) && frame.indent == null) {
+                frame.indent = readInt();
+            } else if ("title".equals(key) && frame.top && frame.title == null) {
+                frame.title = readString();
+                title = frame.title;
+            } else if ("url_map".equals(key) && frame.top && frame.urlMap == null) {
+                frame.urlMap = readUrlMap();
+            } else {
+                throw lexer.error("unexpected key '" + key + "'");
+            }
+        }
+    }
+
+    /**
+     * @brief reads units of the track up to a nested track or the end of the array
+     * @return true if a nested track is next, false if the array is closed
+     */
+    private boolean readUnits(Frame frame) throws IOException, JsonSpecException {
+        while (true) {
+            if (lexer.kind == Kind.closeArray) {
+                lexer.next();
+                frame.unitsClosed = true;
+                return false;
+            }
+            if (!frame.units.isEmpty()) {
+                expect(Kind.comma, "',' or ']'");
+            }
+            if (lexer.kind == Kind.string) {
+                frame.units.add(pool.node(lexer.value));
+                lexer.next();
+            } else if (lexer.kind == Kind.nullValue) {
+                frame.units.add(pool.intern(new NoneNode()));
+                lexer.next();
+            } else if (lexer.kind == Kind.openObject) {
+                return true;
+            } else {
+                throw lexer.error("expected a string, null or a track");
+            }
+        }
+    }
+
+    private int readInt() throws IOException, JsonSpecException {
+        if (lexer.kind != Kind.number) {
+            throw lexer.error("expected an integer");
+        }
+        try {
+            int value = Integer.parseInt(lexer.value);
+            lexer.next();
+            return value;
+        } catch (NumberFormatException e) {
+            throw lexer.error("expected an integer");
+        }
+    }
+
+    private String readString() throws IOException, JsonSpecException {
+        if (lexer.kind != Kind.string) {
+            throw lexer.error("expected a string");
+        }
+        String value = lexer.value;
+        lexer.next();
+        return value;
+    }
+
+    private Map<String, String> readUrlMap() throws IOException, JsonSpecException {
+        Map<String, String> map = new LinkedHashMap<>();
+        expect(Kind.openObject, "'{' of the URL map");
+        if (lexer.kind == Kind.closeObject) {
+            lexer.next();
+            return map;
+        }
+        while (true) {
+            String key = readString();
+            expect(Kind.colon, "':'");
+            map.put(key, readString());
+            if (lexer.kind == Kind.closeObject) {
+                lexer.next();
+                return map;
+            }
+            expect(Kind.comma, "',' or '}'");
+        }
+    }
+
+    private void expect(Kind kind, String what) throws IOException, JsonSpecException {
+        if (lexer.kind != kind) {
+            throw lexer.error("expected " + what);
+        }
+        lexer.next();
+    }
+
+    /**
+     * @return track of the object, as the SyntraxScript function of the same name makes it
+     */
+    private Track track(Frame frame) throws JsonSpecException {
+        String name = frame.name;
+        if (name == null) {
+            throw new JsonSpecException(frame.line, frame.column, "track has none of the keys " + TRACKS);
+        }
+        if (frame.indent != null && !"indentstack".equals(name)) {
+            throw new JsonSpecException(frame.line, frame.column, name + " has no indent");
+        }
+        List<Unit> units = frame.units;
+        if ("line".equals(name)) {
+            return track(new Line(units));
+        } else if ("loop".equals(name) || "toploop".equals(name)) {
+            try {
+                return "loop".equals(name) ? track(new Loop(units)) : track(new Toploop(units));
+            } catch (LoopNotTwoArgsException e) {
+                throw new JsonSpecException(frame.line, frame.column, name + " must have two units");
+            }
+        } else if ("choice".equals(name)) {
+            return track(new Choice(units));
+        } else if ("opt".equals(name)) {
+            return track(new Opt(List.of(track(new Line(units)))));
+        } else if ("optx".equals(name)) {
+            return track(new Optx(List.of(track(new Line(units)))));
+        } else if ("stack".equals(name)) {
+            return track(new Stack(units));
+        } else if ("rightstack".equals(name)) {
+            return track(new Rightstack(units));
+        } else {
+            if (frame.indent == null) {
+                throw new JsonSpecException(frame.line, frame.column, "indentstack must have an indent");
+            }
+            return track(new Indentstack(frame.indent, units));
+        }
+    }
+
+    private <T extends Track> T track(T track) {
+        T pooled = pool.intern(track);
+        limits.checkTime(deadline);
+        limits.checkUnitCount(pool.size());
+        limits.checkUnit(pooled);
+        return pooled;
+    }
+
+    private enum Kind {
+        string, number, nullValue, openObject, closeObject, openArray, closeArray, comma, colon, eof
+    }
+
+    /**
+     * @brief track object read so far
+     */
+    private static final class Frame {
+        private final boolean top;
+        // position of the object, for errors found at its end
+        private final int line;
+        private final int column;
+        private String name;
+        // units of the track, null until its array is opened
+        private List<Unit> units;
+        private boolean unitsClosed;
+        private boolean hasMembers;
+        private Integer indent;
+        private String title;
+        private Map<String, String> urlMap;
+
+        private Frame(boolean top, int line, int column) {
+            this.top = top;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    /**
+     * @brief JSON tokens read from a stream, only the current token is kept
+     */
+    private static final class Lexer {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int pos;
+        private int length;
+        // position of the next char
+        private int nextLine = 1;
+        private int nextColumn = 1;
+        // position of the current token
+        private int line;
+        private int column;
+        private Kind kind;
+        private String value;
+        private boolean started;
+
+        private Lexer(Reader reader) {
+            this.reader = reader;
+        }
+
+        private JsonSpecException error(String message) {
+            return new JsonSpecException(line, column, message);
+        }
+
+        /**
+         * @return the next char without reading it or -1 at the end
+         */
+        private int peek() throws IOException {
+            if (pos == length) {
+                length = reader.read(buffer);
+                pos = 0;
+                if (length <= 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[pos];
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                ++pos;
+                if (c == '\n') {
+                    ++nextLine;
+                    nextColumn = 1;
+                } else {
+                    ++nextColumn;
+                }
+            }
+            return c;
+        }
+
+        private void next() throws IOException, JsonSpecException {
+            value = null;
+            int c = peek();
+            if (!started) {
+                started = true;
+                if (c == BOM) {
+                    // the mark is not a char of the spec, it does not move the column
+                    ++pos;
+                    c = peek();
+                }
+            }
+            while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                read();
+                c = peek();
+            }
+            line = nextLine;
+            column = nextColumn;
+            if (c < 0) {
+                kind = Kind.eof;
+            } else if (c == '"') {
+                read();
+                readString();
+            } else if (c == '-' || c >= '0' && c <= '9') {
+                readNumber();
+            } else if (c >= 'a' && c <= 'z') {
+                readLiteral();
+            } else {
+                read();
+                readPunctuation((char) c);
+            }
+        }
+
+        private void readPunctuation(char c) throws JsonSpecException {
+            if (c == '{') {
+                kind = Kind.openObject;
+            } else if (c == '}') {
+                kind = Kind.closeObject;
+            } else if (c == '[') {
+                kind = Kind.openArray;
+            } else if (c == ']') {
+                kind = Kind.closeArray;
+            } else if (c == ',') {
+                kind = Kind.comma;
+            } else if (c == ':') {
+                kind = Kind.colon;
+            } else {
+                throw error("unexpected '" + c + "'");
+            }
+        }
+
+        private void readLiteral() throws IOException, JsonSpecException {
+            StringBuilder sb = new StringBuilder();
+            while (peek() >= 'a' && peek() <= 'z') {
+                sb.append((char) read());
+            }
+            if (!"null".contentEquals(sb)) {
+                throw error("unexpected " + sb);
+            }
+            kind = Kind.nullValue;
+        }
+
+        /**
+         * @brief reads the chars of a number, the value is checked where a number is expected
+         */
+        private void readNumber() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c = peek();
+            while (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || c >= '0' && c <= '9') {
+                sb.append((char) read());
+                c = peek();
+            }
+            kind = Kind.number;
+            value = sb.toString();
+        }
+
+        private void readString() throws IOException, JsonSpecException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = read();
+                if (c < 0) {
+                    throw error("unterminated string");
+                }
+                if (c == '"') {
+                    break;
+                }
+                if (c < ' ') {
+                    throw error("control character in a string");
+                }
+                if (c != '\\') {
+                    sb.append((char) c);
+                } else {
+                    sb.append(readEscape());
+                }
+            }
+            kind = Kind.string;
+            value = sb.toString();
+        }
+
+        private char readEscape() throws IOException, JsonSpecException {
+            int c = read();
+            if (c == 'n') {
+                return '\n';
+            } else if (c == 't') {
+                return '\t';
+            } else if (c == 'r') {
+                return '\r';
+            } else if (c == 'b') {
+                return '\b';
+            } else if (c == 'f') {
+                return '\f';
+            } else if (c == '\\' || c == '/' || c == '"') {
+                return (char) c;
+            } else if (c == 'u') {
+                int code = 0;
+                for (int i = 0; i < UNICODE_DIGITS; ++i) {
+                    int digit = Character.digit(read(), HEX);
+                    if (digit < 0) {
+                        throw error("invalid unicode escape in a string");
+                    }
+                    code = code * HEX + digit;
+                }
+                return (char) code;
+            }
+            throw error("invalid escape in a string");
+        }
+    }
+}
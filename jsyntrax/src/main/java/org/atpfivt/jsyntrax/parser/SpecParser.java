@@ -0,0 +1,474 @@
+package org.atpfivt.jsyntrax.parser;
+
+import org.atpfivt.jsyntrax.Configuration;
+import org.atpfivt.jsyntrax.Limits;
+import org.atpfivt.jsyntrax.exceptions.LoopNotTwoArgsException;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.UnitPool;
+import org.atpfivt.jsyntrax.units.nodes.NoneNode;
+import org.atpfivt.jsyntrax.units.tracks.Choice;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.atpfivt.jsyntrax.units.tracks.Track;
+import org.atpfivt.jsyntrax.units.tracks.loop.Loop;
+import org.atpfivt.jsyntrax.units.tracks.loop.Toploop;
+import org.atpfivt.jsyntrax.units.tracks.opt.Opt;
+import org.atpfivt.jsyntrax.units.tracks.opt.Optx;
+import org.atpfivt.jsyntrax.units.tracks.stack.Indentstack;
+import org.atpfivt.jsyntrax.units.tracks.stack.Rightstack;
+import org.atpfivt.jsyntrax.units.tracks.stack.Stack;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @brief parser of specs written as plain calls of the diagram functions, without Groovy
+ * @details Specs made of calls of the SyntraxScript functions with string and integer literals, None
+ * and URL maps build here the same units as running them as scripts would. Anything else, like variables,
+ * GString interpolation or a loop of three units, makes parse return null, and the spec is left
+ * to the Groovy Parser, which also reports its errors. Open calls are kept on an explicit stack,
+ * so any depth of nesting fits the stack.
+ */
+public final class SpecParser {
+    // value of None and null
+    private static final Object NONE = new Object();
+    private static final int UNICODE_DIGITS = 4;
+    private static final int HEX = 16;
+
+    private final Lexer lexer;
+    private final Limits limits;
+    private final long deadline;
+    // equal nodes and tracks of the spec are shared, as in SyntraxScript
+    private final UnitPool pool = new UnitPool();
+    // the last track made, returned by title
+    private Track node;
+    private String title;
+    private Configuration configuration;
+
+    private SpecParser(String scriptText, Limits limits) {
+        this.lexer = new Lexer(scriptText);
+        this.limits = limits;
+        this.deadline = limits.getDeadline();
+    }
+
+    /**
+     * @return the parsed spec or null if it needs the Groovy Parser
+     */
+    public static SpecParser parse(String scriptText) {
+        return parse(scriptText, Limits.NONE);
+    }
+
+    /**
+     * @return the parsed spec or null if it needs the Groovy Parser
+     * @throws org.atpfivt.jsyntrax.exceptions.LimitExceededException the spec is out of the limits
+     */
+    public static SpecParser parse(String scriptText, Limits limits) {
+        SpecParser parser = new SpecParser(scriptText, limits);
+        try {
+            Object result = parser.parseScript();
+            if (!(result instanceof Unit)) {
+                return null;
+            }
+            limits.checkUnit((Unit) result);
+            parser.configuration = ((Unit) result).getConfiguration();
+            return parser;
+        } catch (UnsupportedSpecException e) {
+            return null;
+        }
+    }
+
+    public Configuration getNode() {
+        return configuration;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return value of the last statement, as the result of a script
+     */
+    private Object parseScript() throws UnsupportedSpecException {
+        Object result = null;
+        lexer.next();
+        while (true) {
+            while (lexer.kind == Kind.end) {
+                lexer.next();
+            }
+            if (lexer.kind == Kind.eof) {
+                return result;
+            }
+            result = parseExpression();
+            if (lexer.kind != Kind.end && lexer.kind != Kind.eof) {
+                throw new UnsupportedSpecException();
+            }
+        }
+    }
+
+    /**
+     * @brief parses a value or a call with nested calls, arguments are evaluated in order as in Groovy
+     */
+    private Object parseExpression() throws UnsupportedSpecException {
+        ArrayDeque<Call> calls = new ArrayDeque<>();
+        while (true) {
+            Object value;
+            if (lexer.kind == Kind.name) {
+                String name = lexer.value;
+                lexer.next();
+                if (lexer.kind != Kind.open) {
+                    if (!"None".equals(name) && !"null".equals(name)) {
+                        throw new UnsupportedSpecException();
+                    }
+                    value = NONE;
+                } else {
+                    lexer.next();
+                    calls.push(new Call(name));
+                    if (lexer.kind != Kind.close) {
+                        continue;
+                    }
+                    lexer.next();
+                    value = call(calls.pop());
+                }
+            } else if (lexer.kind == Kind.string) {
+                value = lexer.value;
+                lexer.next();
+            } else if (lexer.kind == Kind.number) {
+                value = new BigInteger(lexer.value);
+                lexer.next();
+            } else if (lexer.kind == Kind.openList) {
+                value = parseMap();
+            } else {
+                throw new UnsupportedSpecException();
+            }
+
+            // the value is an argument of the innermost call, calls closed after it are made
+            while (true) {
+                if (calls.isEmpty()) {
+                    return value;
+                }
+                calls.peek().args.add(value);
+                if (lexer.kind == Kind.comma) {
+                    lexer.next();
+                    break;
+                }
+                if (lexer.kind != Kind.close) {
+                    throw new UnsupportedSpecException();
+                }
+                lexer.next();
+                value = call(calls.pop());
+            }
+        }
+    }
+
+    /**
+     * @return map of a literal like ['key': 'value', key: 'value'] or [:]
+     */
+    private Map<String, String> parseMap() throws UnsupportedSpecException {
+        Map<String, String> map = new LinkedHashMap<>();
+        lexer.next();
+        if (lexer.kind == Kind.colon) {
+            lexer.next();
+            expect(Kind.closeList);
+            return map;
+        }
+        while (true) {
+            if (lexer.kind != Kind.string && lexer.kind != Kind.name) {
+                throw new UnsupportedSpecException();
+            }
+            String key = lexer.value;
+            lexer.next();
+            expect(Kind.colon);
+            if (lexer.kind != Kind.string) {
+                throw new UnsupportedSpecException();
+            }
+            map.put(key, lexer.value);
+            lexer.next();
+            if (lexer.kind == Kind.closeList) {
+                lexer.next();
+                return map;
+            }
+            expect(Kind.comma);
+        }
+    }
+
+    private void expect(Kind kind) throws UnsupportedSpecException {
+        if (lexer.kind != kind) {
+            throw new UnsupportedSpecException();
+        }
+        lexer.next();
+    }
+
+    /**
+     * @return result of the diagram function, as SyntraxScript makes it
+     */
+    private Object call(Call c) throws UnsupportedSpecException {
+        String name = c.name;
+        List<Object> args = c.args;
+        try {
+            if ("line".equals(name)) {
+                return line(units(args, 0));
+            } else if ("loop".equals(name)) {
+                return track(new Loop(units(args, 0)));
+            } else if ("toploop".equals(name)) {
+                return track(new Toploop(units(args, 0)));
+            } else if ("choice".equals(name)) {
+                return track(new Choice(units(args, 0)));
+            } else if ("opt".equals(name)) {
+                return track(new Opt(List.of(line(units(args, 0)))));
+            } else if ("optx".equals(name)) {
+                return track(new Optx(List.of(line(units(args, 0)))));
+            } else if ("stack".equals(name)) {
+                return track(new Stack(units(args, 0)));
+            } else if ("rightstack".equals(name)) {
+                return track(new Rightstack(units(args, 0)));
+            } else if ("indentstack".equals(name) && !args.isEmpty() && args.get(0) instanceof BigInteger) {
+                return track(new Indentstack(((BigInteger) args.get(0)).intValueExact(), units(args, 1)));
+            } else if ("title".equals(name) && args.size() == 1 && args.get(0) instanceof String) {
+                title = (String) args.get(0);
+                return node == null ? NONE : node;
+            } else if ("jsyntrax".equals(name) && !args.isEmpty() && args.size() <= 2
+                    && args.get(0) instanceof Track) {
+                if (args.size() == 1) {
+                    return new Configuration((Track) args.get(0), new LinkedHashMap<>());
+                }
+                if (args.get(1) instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, String> urlMap = (Map<String, String>) args.get(1);
+                    return new Configuration((Track) args.get(0), urlMap);
+                }
+            }
+        } catch (LoopNotTwoArgsException | ArithmeticException e) {
+            // the script reports these
+            throw new UnsupportedSpecException();
+        }
+        throw new UnsupportedSpecException();
+    }
+
+    private Line line(List<Unit> units) {
+        return track(new Line(units));
+    }
+
+    private <T extends Track> T track(T track) {
+        T pooled = pool.intern(track);
+        node = pooled;
+        limits.checkTime(deadline);
+        limits.checkUnitCount(pool.size());
+        limits.checkUnit(pooled);
+        return pooled;
+    }
+
+    /**
+     * @return arguments from the first one as units, like SyntraxScript.unitsToString
+     */
+    private List<Unit> units(List<Object> args, int first) throws UnsupportedSpecException {
+        // Groovy may pass a single null as no array of arguments
+        if (args.size() == first + 1 && args.get(first) == NONE) {
+            throw new UnsupportedSpecException();
+        }
+        List<Unit> units = new ArrayList<>(args.size() - first);
+        for (Object a : args.subList(first, args.size())) {
+            if (a == NONE) {
+                units.add(pool.intern(new NoneNode()));
+            } else if (a instanceof Track) {
+                units.add((Track) a);
+            } else if (a instanceof String || a instanceof BigInteger) {
+                units.add(pool.node(a.toString()));
+            } else {
+                throw new UnsupportedSpecException();
+            }
+        }
+        return units;
+    }
+
+    private enum Kind {
+        name, string, number, open, close, openList, closeList, comma, colon, end, eof
+    }
+
+    /**
+     * @brief call with the arguments read so far
+     */
+    private static final class Call {
+        private final String name;
+        private final List<Object> args = new ArrayList<>();
+
+        private Call(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * @brief tokens of the spec, a line break ends a statement only out of brackets
+     */
+    private static final class Lexer {
+        private final String text;
+        private int pos;
+        private int depth;
+        private Kind kind;
+        private String value;
+
+        private Lexer(String text) {
+            this.text = text;
+        }
+
+        private void next() throws UnsupportedSpecException {
+            value = null;
+            skipSpace();
+            if (kind == Kind.end) {
+                return;
+            }
+            if (pos == text.length()) {
+                kind = Kind.eof;
+                return;
+            }
+            char c = text.charAt(pos);
+            if (c == '\'' || c == '"') {
+                readString(c);
+            } else if (c >= '0' && c <= '9') {
+                readNumber();
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = pos;
+                while (pos < text.length() && Character.isJavaIdentifierPart(text.charAt(pos))) {
+                    ++pos;
+                }
+                kind = Kind.name;
+                value = text.substring(start, pos);
+            } else {
+                ++pos;
+                readPunctuation(c);
+            }
+        }
+
+        /**
+         * @brief skips spaces and comments, kind is end if a statement ends in them
+         */
+        private void skipSpace() throws UnsupportedSpecException {
+            kind = null;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '\n' && depth == 0) {
+                    ++pos;
+                    kind = Kind.end;
+                    return;
+                } else if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f') {
+                    ++pos;
+                } else if (text.startsWith("//", pos)) {
+                    int eol = text.indexOf('\n', pos);
+                    pos = eol < 0 ? text.length() : eol;
+                } else if (text.startsWith("/*", pos)) {
+                    int close = text.indexOf("*/", pos + 2);
+                    // a comment over several lines between statements is left to Groovy
+                    if (close < 0 || depth == 0 && text.substring(pos, close).indexOf('\n') >= 0) {
+                        throw new UnsupportedSpecException();
+                    }
+                    pos = close + 2;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void readPunctuation(char c) throws UnsupportedSpecException {
+            if (c == '(' || c == '[') {
+                ++depth;
+                kind = c == '(' ? Kind.open : Kind.openList;
+            } else if ((c == ')' || c == ']') && depth > 0) {
+                --depth;
+                kind = c == ')' ? Kind.close : Kind.closeList;
+            } else if (c == ',') {
+                kind = Kind.comma;
+            } else if (c == ':') {
+                kind = Kind.colon;
+            } else if (c == ';' && depth == 0) {
+                kind = Kind.end;
+            } else {
+                throw new UnsupportedSpecException();
+            }
+        }
+
+        /**
+         * @brief reads a decimal integer, other numbers are left to Groovy
+         */
+        private void readNumber() throws UnsupportedSpecException {
+            int start = pos;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                ++pos;
+            }
+            if (pos < text.length() && (Character.isJavaIdentifierPart(text.charAt(pos)) || text.charAt(pos) == '.')
+                    || text.charAt(start) == '0' && pos - start > 1) {
+                throw new UnsupportedSpecException();
+            }
+            kind = Kind.number;
+            value = text.substring(start, pos);
+        }
+
+        /**
+         * @brief reads a string on one line, GString interpolation and rare escapes are left to Groovy
+         */
+        private void readString(char quote) throws UnsupportedSpecException {
+            StringBuilder sb = new StringBuilder();
+            ++pos;
+            while (true) {
+                if (pos == text.length()) {
+                    throw new UnsupportedSpecException();
+                }
+                char c = text.charAt(pos++);
+                if (c == quote) {
+                    break;
+                }
+                if (c == '\n' || c == '\r' || c == '$' && quote == '"') {
+                    throw new UnsupportedSpecException();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                } else {
+                    sb.append(readEscape());
+                }
+            }
+            // '''text''' and """text""" start with an empty string
+            if (sb.length() == 0 && pos < text.length() && text.charAt(pos) == quote) {
+                throw new UnsupportedSpecException();
+            }
+            kind = Kind.string;
+            value = sb.toString();
+        }
+
+        private char readEscape() throws UnsupportedSpecException {
+            if (pos == text.length()) {
+                throw new UnsupportedSpecException();
+            }
+            char c = text.charAt(pos++);
+            if (c == 'n') {
+                return '\n';
+            } else if (c == 't') {
+                return '\t';
+            } else if (c == 'r') {
+                return '\r';
+            } else if (c == 'b') {
+                return '\b';
+            } else if (c == 'f') {
+                return '\f';
+            } else if (c == '\\' || c == '\'' || c == '"' || c == '$') {
+                return c;
+            } else if (c == 'u' && pos + UNICODE_DIGITS <= text.length()) {
+                String digits = text.substring(pos, pos + UNICODE_DIGITS);
+                if (digits.chars().allMatch(d -> Character.digit(d, HEX) >= 0)) {
+                    pos += UNICODE_DIGITS;
+                    return (char) Integer.parseInt(digits, HEX);
+                }
+            }
+            throw new UnsupportedSpecException();
+        }
+    }
+
+    /**
+     * @brief the spec is out of the subset parsed without Groovy
+     */
+    private static final class UnsupportedSpecException extends Exception {
+        private UnsupportedSpecException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -33,6 +33,11 @@ public final class StyleConfig {
     private Font titleFont = new Font("Sans", Font.BOLD, 22);
     private double scale;
     private boolean transparency;
+    private TextMetrics textMetrics = TextMetrics.awt;
+    private boolean compact;
+    private boolean symbols;
+    private boolean viewBoxScale;
+    private boolean shadowFilter;
     private NodeStyle defNodeStyle = new NodeStyle();
     private List<NodeStyle> nodeStyles = new ArrayList<>(List.of(
             new NodeBubbleStyle(),
@@ -224,6 +229,26 @@ public final class StyleConfig {
         return transparency;
     }
 
+    public TextMetrics getTextMetrics() {
+        return textMetrics;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public boolean isSymbols() {
+        return symbols;
+    }
+
+    public boolean isViewBoxScale() {
+        return viewBoxScale;
+    }
+
+    public boolean isShadowFilter() {
+        return shadowFilter;
+    }
+
     public void setLineWidth(int lineWidth) {
         this.lineWidth = lineWidth;
     }
@@ -288,6 +313,32 @@ public final class StyleConfig {
         this.transparency = transparency;
     }
 
+    public void setTextMetrics(TextMetrics textMetrics) {
+        this.textMetrics = textMetrics;
+    }
+
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public void setSymbols(boolean symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * @param viewBoxScale keep coordinates of elements unscaled and scale the image by its viewBox
+     */
+    public void setViewBoxScale(boolean viewBoxScale) {
+        this.viewBoxScale = viewBoxScale;
+    }
+
+    /**
+     * @param shadowFilter draw shadows of nodes with a shared SVG filter instead of copies of node shapes
+     */
+    public void setShadowFilter(boolean shadowFilter) {
+        this.shadowFilter = shadowFilter;
+    }
+
     public NodeStyle getDefNodeStyle() {
         return defNodeStyle;
     }
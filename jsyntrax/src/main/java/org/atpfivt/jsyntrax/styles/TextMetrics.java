@@ -0,0 +1,13 @@
+package org.atpfivt.jsyntrax.styles;
+
+public enum TextMetrics {
+    /**
+     * Measure text with installed fonts.
+     */
+    awt,
+
+    /**
+     * Measure text with bundled advance width tables, no fonts are loaded.
+     */
+    table
+}
@@ -15,10 +15,27 @@ public interface Unit {
       return Collections.emptyList();
     }
 
+    /**
+     * @return number of tracks nested in each other in the unit, 0 for nodes
+     */
+    default int getDepth() {
+      return 0;
+    }
+
+    /**
+     * @return number of units laid out for the unit, repeated units are counted every time
+     */
+    default long getUnitCount() {
+      return 1;
+    }
+
     default Configuration getConfiguration() {
-        return new Configuration(this.getTrack());
+        return this.getTrack().getConfiguration();
     }
 
+    /**
+     * @return this unit as a track, implementations return the same track on every call
+     */
     default Track getTrack() {
       return new Line(this);
     }
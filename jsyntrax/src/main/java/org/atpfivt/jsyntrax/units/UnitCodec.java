@@ -0,0 +1,202 @@
+package org.atpfivt.jsyntrax.units;
+
+import org.atpfivt.jsyntrax.exceptions.LoopNotTwoArgsException;
+import org.atpfivt.jsyntrax.units.nodes.Bullet;
+import org.atpfivt.jsyntrax.units.nodes.Node;
+import org.atpfivt.jsyntrax.units.nodes.NoneNode;
+import org.atpfivt.jsyntrax.units.tracks.Choice;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.atpfivt.jsyntrax.units.tracks.Track;
+import org.atpfivt.jsyntrax.units.tracks.loop.Loop;
+import org.atpfivt.jsyntrax.units.tracks.loop.Toploop;
+import org.atpfivt.jsyntrax.units.tracks.opt.Opt;
+import org.atpfivt.jsyntrax.units.tracks.opt.Optx;
+import org.atpfivt.jsyntrax.units.tracks.stack.Indentstack;
+import org.atpfivt.jsyntrax.units.tracks.stack.Rightstack;
+import org.atpfivt.jsyntrax.units.tracks.stack.Stack;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @brief binary form of units
+ * @details Units are written once each, children before their tracks, and tracks refer to their units
+ * by index. Units shared in the tree stay shared when read, and neither writing nor reading
+ * recurses, so any depth of nesting fits the stack. Only units of the classes of this package
+ * can be written, reading never creates other classes.
+ */
+public final class UnitCodec {
+    private static final List<Class<? extends Unit>> TAGS = List.of(
+            Node.class, NoneNode.class, Bullet.class, Line.class, Choice.class, Opt.class, Optx.class,
+            Loop.class, Toploop.class, Stack.class, Rightstack.class, Indentstack.class);
+    private static final int NULL_INDEX = -1;
+    // counts and lengths are only trusted as far as their data is read
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+    private UnitCodec() { }
+
+    /**
+     * @throws IllegalArgumentException the tree has a unit of another class
+     */
+    public static void write(DataOutput out, Unit root) throws IOException {
+        List<Unit> order = new ArrayList<>();
+        Map<Unit, Integer> indices = new IdentityHashMap<>();
+        // units on the path from the root and the next child of each
+        List<Unit> path = new ArrayList<>();
+        List<Integer> next = new ArrayList<>();
+        path.add(root);
+        next.add(0);
+        while (!path.isEmpty()) {
+            int top = path.size() - 1;
+            Unit unit = path.get(top);
+            List<Unit> units = unit instanceof Track ? unit.getUnits() : List.of();
+            int i = next.get(top);
+            while (i < units.size() && (units.get(i) == null || indices.containsKey(units.get(i)))) {
+                ++i;
+            }
+            if (i < units.size()) {
+                next.set(top, i + 1);
+                path.add(units.get(i));
+                next.add(0);
+                continue;
+            }
+            path.remove(top);
+            next.remove(top);
+            if (!indices.containsKey(unit)) {
+                indices.put(unit, order.size());
+                order.add(unit);
+            }
+        }
+
+        out.writeInt(order.size());
+        for (Unit unit : order) {
+            int tag = TAGS.indexOf(unit.getClass());
+            if (tag < 0) {
+                throw new IllegalArgumentException("Unit " + unit.getClass().getName() + " can't be written");
+            }
+            out.writeByte(tag);
+            if (unit instanceof Indentstack) {
+                out.writeInt(((Indentstack) unit).getIndent());
+            }
+            if (unit instanceof Track) {
+                out.writeInt(unit.getUnits().size());
+                for (Unit u : unit.getUnits()) {
+                    out.writeInt(u == null ? NULL_INDEX : indices.get(u));
+                }
+            } else if (unit.getClass() == Node.class) {
+                // the text of NoneNode is always empty
+                writeString(out, unit.toString());
+            }
+        }
+    }
+
+    /**
+     * @return root of the units read
+     * @throws IOException the data is not written by write
+     */
+    public static Unit read(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count <= 0) {
+            throw new IOException("Invalid number of units: " + count);
+        }
+        List<Unit> units = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int n = 0; n < count; ++n) {
+            int tag = in.readUnsignedByte();
+            if (tag >= TAGS.size()) {
+                throw new IOException("Invalid unit tag: " + tag);
+            }
+            Class<? extends Unit> c = TAGS.get(tag);
+            if (c == Node.class) {
+                units.add(new Node(readString(in)));
+            } else if (c == NoneNode.class) {
+                units.add(new NoneNode());
+            } else if (c == Bullet.class) {
+                units.add(new Bullet());
+            } else {
+                int indent = c == Indentstack.class ? in.readInt() : 0;
+                units.add(newTrack(c, indent, readUnits(in, units)));
+            }
+        }
+        return units.get(count - 1);
+    }
+
+    private static List<Unit> readUnits(DataInput in, List<Unit> read) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid number of units: " + size);
+        }
+        List<Unit> units = new ArrayList<>(Math.min(size, read.size() + 1));
+        for (int i = 0; i < size; ++i) {
+            int index = in.readInt();
+            if (index < NULL_INDEX || index >= read.size()) {
+                throw new IOException("Invalid unit index: " + index);
+            }
+            units.add(index == NULL_INDEX ? null : read.get(index));
+        }
+        return units;
+    }
+
+    private static Track newTrack(Class<? extends Unit> c, int indent, List<Unit> units) throws IOException {
+        try {
+            if (c == Line.class) {
+                return new Line(units);
+            } else if (c == Choice.class) {
+                return new Choice(units);
+            } else if (c == Opt.class) {
+                return new Opt(units);
+            } else if (c == Optx.class) {
+                return new Optx(units);
+            } else if (c == Loop.class) {
+                return new Loop(units);
+            } else if (c == Toploop.class) {
+                return new Toploop(units);
+            } else if (c == Stack.class) {
+                return new Stack(units);
+            } else if (c == Rightstack.class) {
+                return new Rightstack(units);
+            } else {
+                return new Indentstack(indent, units);
+            }
+        } catch (LoopNotTwoArgsException e) {
+            throw new IOException("Loop must have two units, got " + units.size(), e);
+        }
+    }
+
+    /**
+     * @brief writes text as its length and UTF-8 bytes, for units and other data stored with them
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return text written by writeString
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid text length: " + length);
+        }
+        // the length is only trusted as far as the bytes are read, a broken length ends at the end of the data
+        byte[] bytes = new byte[Math.min(length, MAX_INITIAL_CAPACITY)];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+            }
+            int n = bytes.length - read;
+            in.readFully(bytes, read, n);
+            read += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
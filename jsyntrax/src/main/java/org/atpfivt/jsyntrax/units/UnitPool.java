@@ -0,0 +1,38 @@
+package org.atpfivt.jsyntrax.units;
+
+import org.atpfivt.jsyntrax.units.nodes.Node;
+
+import java.util.HashMap;
+
+/**
+ * @brief pool of equal units
+ * @details Units are immutable, so an equal unit built again can be replaced by the one
+ * already in the pool. If units of a track are interned before the track itself,
+ * the comparison stops at identical units and takes time proportional to the number of units.
+ */
+public final class UnitPool {
+    private final HashMap<Unit, Unit> units = new HashMap<>();
+
+    /**
+     * @return unit of the pool equal to the given one, the given unit is added if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Unit> T intern(T unit) {
+        if (unit == null) {
+            return null;
+        }
+        Unit pooled = units.putIfAbsent(unit, unit);
+        return pooled == null ? unit : (T) pooled;
+    }
+
+    public Node node(String text) {
+        return intern(new Node(text));
+    }
+
+    /**
+     * @return number of distinct units in the pool
+     */
+    public int size() {
+        return units.size();
+    }
+}
@@ -6,6 +6,9 @@ import org.atpfivt.jsyntrax.units.tracks.Track;
 import org.atpfivt.jsyntrax.visitors.Visitor;
 
 public class Bullet implements Unit {
+    // line of this bullet, made on first request
+    private Line track;
+
     public Bullet() { }
 
     @Override
@@ -14,7 +17,20 @@ public class Bullet implements Unit {
     }
 
     public Track getTrack() {
-        return new Line(this);
+        if (track == null) {
+            track = new Line(this);
+        }
+        return track;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o != null && o.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().getName().hashCode();
     }
 }
 
@@ -1,32 +1,22 @@
 package org.atpfivt.jsyntrax.units.nodes;
 
-import org.atpfivt.jsyntrax.styles.StyleConfig;
 import org.atpfivt.jsyntrax.units.Unit;
 import org.atpfivt.jsyntrax.units.tracks.Line;
 import org.atpfivt.jsyntrax.units.tracks.Track;
 import org.atpfivt.jsyntrax.visitors.Visitor;
 
+/**
+ * @brief immutable text node, nodes of the same class and text are equal
+ */
 public class Node implements Unit {
-  private StyleConfig style;
   private final String text;
-  private boolean isLink = false;
+  // line of this node, made on first request
+  private Line track;
 
   public Node(String text) {
     this.text = text;
   }
 
-  public boolean isLink() {
-    return isLink;
-  }
-
-  public void setLink() {
-    isLink = true;
-  }
-
-  public void unsetLink() {
-    isLink = false;
-  }
-
   @Override
   public String toString() {
     return text;
@@ -37,14 +27,22 @@ public class Node implements Unit {
   }
 
   public Track getTrack() {
-    return new Line(this);
+    if (track == null) {
+      track = new Line(this);
+    }
+    return track;
   }
 
-  public StyleConfig getStyle() {
-    return style;
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    return o != null && o.getClass() == getClass() && text.equals(((Node) o).text);
   }
 
-  public void setStyle(StyleConfig style) {
-    this.style = style;
+  @Override
+  public int hashCode() {
+    return 31 * getClass().getName().hashCode() + text.hashCode();
   }
 }
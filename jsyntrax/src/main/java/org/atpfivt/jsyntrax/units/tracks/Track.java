@@ -1,15 +1,55 @@
 package org.atpfivt.jsyntrax.units.tracks;
 
+import org.atpfivt.jsyntrax.Configuration;
 import org.atpfivt.jsyntrax.units.Unit;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
+/**
+ * @brief immutable track of units
+ * @details Tracks of the same class with equal attributes and units are equal.
+ * The hash is computed once from the hashes of the units, so neither hashing nor comparison
+ * recurses into nested tracks. Depth and unit count are computed once the same way.
+ */
 public abstract class Track implements Unit {
   private final List<Unit> units;
+  private final int hash;
+  private final int depth;
+  private final long unitCount;
+  // configuration of this track, made on first request
+  private Configuration configuration;
 
   public Track(List<Unit> units) {
-    this.units = units;
+    this.units = Collections.unmodifiableList(new ArrayList<>(units));
+    int h = getClass().getName().hashCode();
+    int d = 0;
+    long count = 1;
+    for (Unit unit : this.units) {
+      h = 31 * h + Objects.hashCode(unit);
+      if (unit != null) {
+        d = Math.max(d, unit.getDepth());
+        // repeated units may make the count of a small tree overflow
+        count = unit.getUnitCount() > Long.MAX_VALUE - count ? Long.MAX_VALUE : count + unit.getUnitCount();
+      }
+    }
+    this.hash = h;
+    this.depth = d + 1;
+    this.unitCount = count;
+  }
+
+  @Override
+  public int getDepth() {
+    return depth;
+  }
+
+  @Override
+  public long getUnitCount() {
+    return unitCount;
   }
 
   @Override
@@ -17,16 +57,102 @@ public abstract class Track implements Unit {
     return units;
   }
 
+  /**
+   * @return text printed before units of the track
+   */
+  protected String getHeader() {
+    return "< " + this.getClass().getSimpleName() + "[ ";
+  }
+
+  /**
+   * Nested tracks are printed without recursion, so any depth of nesting fits the stack.
+   */
   @Override
-  public String toString() {
-    return "< " + this.getClass().getSimpleName()
-            + "[ " + units.stream().map(Object::toString)
-            .collect(Collectors.joining("\n"))
-            + " ]" + " >";
+  public final String toString() {
+    StringBuilder sb = new StringBuilder(getHeader());
+    ArrayDeque<Iterator<Unit>> open = new ArrayDeque<>();
+    open.push(units.iterator());
+    while (!open.isEmpty()) {
+      Iterator<Unit> it = open.peek();
+      if (!it.hasNext()) {
+        open.pop();
+        sb.append(" ] >");
+      } else {
+        Unit unit = it.next();
+        if (unit instanceof Track) {
+          Track track = (Track) unit;
+          sb.append(track.getHeader());
+          open.push(track.units.iterator());
+          continue;
+        }
+        sb.append(unit);
+      }
+      if (!open.isEmpty() && open.peek().hasNext()) {
+        sb.append("\n");
+      }
+    }
+    return sb.toString();
   }
 
   @Override
   public Track getTrack() {
     return this;
   }
+
+  @Override
+  public Configuration getConfiguration() {
+    if (configuration == null) {
+      configuration = new Configuration(this);
+    }
+    return configuration;
+  }
+
+  /**
+   * @return true if attributes of the track other than units are equal, other is of the same class
+   */
+  protected boolean equalAttributes(Track other) {
+    return true;
+  }
+
+  @Override
+  public final boolean equals(Object o) {
+    if (!(o instanceof Track)) {
+      return false;
+    }
+    // pairs of units to compare, nested tracks are compared without recursion
+    ArrayList<Unit> pending = new ArrayList<>();
+    pending.add(this);
+    pending.add((Track) o);
+    while (!pending.isEmpty()) {
+      Unit b = pending.remove(pending.size() - 1);
+      Unit a = pending.remove(pending.size() - 1);
+      if (a == b) {
+        continue;
+      }
+      if (a == null || b == null || a.getClass() != b.getClass() || a.hashCode() != b.hashCode()) {
+        return false;
+      }
+      if (!(a instanceof Track)) {
+        if (!a.equals(b)) {
+          return false;
+        }
+        continue;
+      }
+      Track ta = (Track) a;
+      Track tb = (Track) b;
+      if (ta.units.size() != tb.units.size() || !ta.equalAttributes(tb)) {
+        return false;
+      }
+      for (int i = 0; i < ta.units.size(); ++i) {
+        pending.add(ta.units.get(i));
+        pending.add(tb.units.get(i));
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public final int hashCode() {
+    return hash;
+  }
 }
@@ -18,19 +18,24 @@ public class Loop extends ComplexTrack {
   }
 
   public Track getForwardPart() {
-    return getUnits().get(0).getTrack();
+    return getPart(0);
   }
 
   public Track getBackwardPart() {
-    return getUnits().get(1).getTrack();
+    return getPart(1);
   }
 
   public boolean isForwardNull() {
-    return getForwardPart() == null;
+    return getUnits().get(0) == null;
   }
 
   public boolean isBackwardNull() {
-    return getBackwardPart() == null;
+    return getUnits().get(1) == null;
+  }
+
+  private Track getPart(int i) {
+    Unit unit = getUnits().get(i);
+    return unit == null ? null : unit.getTrack();
   }
 
   public void accept(Visitor visitor) {
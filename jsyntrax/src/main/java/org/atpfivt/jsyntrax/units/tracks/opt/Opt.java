@@ -5,7 +5,6 @@ import org.atpfivt.jsyntrax.units.tracks.ComplexTrack;
 import org.atpfivt.jsyntrax.visitors.Visitor;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Opt extends ComplexTrack {
   public Opt(List<Unit> units) {
@@ -13,11 +12,8 @@ public class Opt extends ComplexTrack {
   }
 
   @Override
-  public String toString() {
-    return "< " + this.getClass().getSimpleName()
-            + " [ " + getUnits().stream().map(Object::toString)
-            .collect(Collectors.joining("\n"))
-            + " ]" + " >";
+  protected String getHeader() {
+    return "< " + this.getClass().getSimpleName() + " [ ";
   }
 
   public void accept(Visitor visitor) {
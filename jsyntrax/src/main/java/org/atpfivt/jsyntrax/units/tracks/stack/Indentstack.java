@@ -1,10 +1,10 @@
 package org.atpfivt.jsyntrax.units.tracks.stack;
 
 import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.tracks.Track;
 import org.atpfivt.jsyntrax.visitors.Visitor;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 public final class Indentstack extends Stack {
   private final int indent;
@@ -19,12 +19,14 @@ public final class Indentstack extends Stack {
   }
 
   @Override
-  public String toString() {
+  protected String getHeader() {
     return "< " + this.getClass().getSimpleName()
-            + ", indent = " + indent + " [ "
-            + getUnits().stream().map(Object::toString)
-            .collect(Collectors.joining("\n"))
-            + " ]" + " >";
+            + ", indent = " + indent + " [ ";
+  }
+
+  @Override
+  protected boolean equalAttributes(Track other) {
+    return indent == ((Indentstack) other).indent;
   }
 
   @Override
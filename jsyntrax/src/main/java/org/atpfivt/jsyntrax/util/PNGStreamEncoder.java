@@ -0,0 +1,211 @@
+package org.atpfivt.jsyntrax.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * @brief PNG encoder taking the image row by row, so the whole image is never kept in memory
+ * @details Rows are filtered with the PNG filter giving the smallest sum of bytes, compressed as they come
+ * and written out in IDAT chunks of CHUNK_SIZE bytes. Images are 8 bit RGB or RGBA.
+ */
+public final class PNGStreamEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_RGBA = 6;
+    private static final int FILTERS = 5;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final DeflaterOutputStream compressed;
+    private final Deflater deflater = new Deflater();
+    private final ChunkStream idat = new ChunkStream();
+    // unfiltered bytes of the previous and current row
+    private byte[] previous;
+    private byte[] current;
+    // filtered current row for every filter, each starts with the filter type
+    private final byte[][] filtered = new byte[FILTERS][];
+    private int rows;
+
+    /**
+     * @brief writes the PNG header to the stream, the stream is left open
+     * @param alpha write the alpha channel of pixels
+     */
+    public PNGStreamEncoder(OutputStream out, int width, int height, boolean alpha) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.channels = alpha ? 4 : 3;
+        int rowBytes = Math.multiplyExact(width, channels);
+        this.previous = new byte[rowBytes];
+        this.current = new byte[rowBytes];
+        for (int f = 0; f < FILTERS; ++f) {
+            filtered[f] = new byte[rowBytes + 1];
+            filtered[f][0] = (byte) f;
+        }
+        this.compressed = new DeflaterOutputStream(idat, deflater, CHUNK_SIZE);
+
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeInt(header, width);
+        writeInt(header, height);
+        header.write(8);
+        header.write(alpha ? COLOR_RGBA : COLOR_RGB);
+        // compression, filter and interlace methods
+        header.write(0);
+        header.write(0);
+        header.write(0);
+        writeChunk("IHDR", header.toByteArray(), header.size());
+    }
+
+    /**
+     * @param argb pixels as in TYPE_INT_ARGB images, not premultiplied
+     * @param offset index of the first pixel of the row
+     */
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (rows == height) {
+            throw new IllegalStateException("All " + height + " rows are written");
+        }
+        int i = 0;
+        for (int x = 0; x < width; ++x) {
+            int p = argb[offset + x];
+            current[i++] = (byte) (p >> 16);
+            current[i++] = (byte) (p >> 8);
+            current[i++] = (byte) p;
+            if (channels == 4) {
+                current[i++] = (byte) (p >>> 24);
+            }
+        }
+        compressed.write(filter());
+        byte[] t = previous;
+        previous = current;
+        current = t;
+        ++rows;
+    }
+
+    /**
+     * @brief writes the rest of the image data and the end of the image, the stream is left open
+     */
+    public void finish() throws IOException {
+        if (rows != height) {
+            throw new IllegalStateException("Only " + rows + " of " + height + " rows are written");
+        }
+        compressed.finish();
+        deflater.end();
+        idat.flush();
+        writeChunk("IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    /**
+     * @return filtered row with the smallest sum of absolute values of its bytes
+     */
+    private byte[] filter() {
+        long[] sums = new long[FILTERS];
+        for (int i = 0; i < current.length; ++i) {
+            int x = current[i] & 0xff;
+            int a = i >= channels ? current[i - channels] & 0xff : 0;
+            // there is no row above the first one
+            int b = rows > 0 ? previous[i] & 0xff : 0;
+            int c = rows > 0 && i >= channels ? previous[i - channels] & 0xff : 0;
+            sums[0] += setFiltered(0, i, x);
+            sums[1] += setFiltered(1, i, x - a);
+            sums[2] += setFiltered(2, i, x - b);
+            sums[3] += setFiltered(3, i, x - (a + b) / 2);
+            sums[4] += setFiltered(4, i, x - paeth(a, b, c));
+        }
+        int best = 0;
+        for (int f = 1; f < FILTERS; ++f) {
+            if (sums[f] < sums[best]) {
+                best = f;
+            }
+        }
+        return filtered[best];
+    }
+
+    /**
+     * @return absolute value of the byte, as the filter heuristic counts it
+     */
+    private int setFiltered(int filter, int i, int value) {
+        byte v = (byte) value;
+        filtered[filter][i + 1] = v;
+        return Math.abs(v);
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        writeInt(out, length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream s, int value) throws IOException {
+        s.write(value >>> 24);
+        s.write(value >>> 16);
+        s.write(value >>> 8);
+        s.write(value);
+    }
+
+    /**
+     * @brief collects compressed data and writes it out in IDAT chunks
+     */
+    private final class ChunkStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int length;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == buffer.length) {
+                flush();
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(len, buffer.length - length);
+                System.arraycopy(b, off, buffer, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (length > 0) {
+                writeChunk("IDAT", buffer, length);
+                length = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.atpfivt.jsyntrax.util;
+
+import org.apache.batik.anim.dom.SVGDOMImplementation;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.atpfivt.jsyntrax.generators.DOMRenderer;
+import org.atpfivt.jsyntrax.generators.SVGCanvas;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @brief thread-safe PNG transcoding with reused transcoders, for rendering many images
+ * @details A transcoder is used by one thread at a time, so at most concurrency images are transcoded at once.
+ * Batches are spread over a fixed number of worker threads, started on first use.
+ * Output buffers are sized from the size of the image, so they rarely grow.
+ */
+public final class PNGTranscoderPool implements AutoCloseable {
+    // smallest document that makes Batik load its parser, bridge and encoder
+    private static final String WARM_UP_SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"8\" height=\"8\">"
+            + "<style type=\"text/css\">.w {fill:#000000; font-size:8pt;}</style>"
+            + "<path d=\"M0,0 A4,4 0 0,1 8,8\" stroke=\"#000000\" fill=\"none\"/>"
+            + "<text class=\"w\" x=\"0\" y=\"8\">w</text></svg>";
+
+    private final int concurrency;
+    private final BlockingQueue<PNGTranscoder> transcoders;
+    private ExecutorService workers;
+
+    /**
+     * @param concurrency number of images transcoded at once
+     */
+    public PNGTranscoderPool(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        this.transcoders = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; ++i) {
+            transcoders.add(new PNGTranscoder());
+        }
+    }
+
+    /**
+     * @brief pool transcoding as many images at once as there are processors
+     */
+    public PNGTranscoderPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @brief transcodes a small document with every transcoder, so the first real images are not slowed down
+     * @return this pool
+     */
+    public PNGTranscoderPool warmUp() throws TranscoderException {
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < concurrency; ++i) {
+            documents.add(WARM_UP_SVG);
+        }
+        transcodeAll(documents);
+        return this;
+    }
+
+    public byte[] transcode(String svgString) throws TranscoderException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(SVGTranscoder.expectedPngSize(svgString));
+        transcode(new TranscoderInput(new StringReader(svgString)), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @brief transcodes the document built by the canvas, see SVGTranscoder
+     */
+    public byte[] transcode(SVGCanvas canvas) throws TranscoderException {
+        Document doc = new DOMRenderer(canvas).generateDocument(SVGDOMImplementation.getDOMImplementation());
+        String width = doc.getDocumentElement().getAttribute("width");
+        String height = doc.getDocumentElement().getAttribute("height");
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                SVGTranscoder.expectedPngSize(Long.parseLong(width), Long.parseLong(height)));
+        transcode(new TranscoderInput(doc), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @brief transcodes the documents in parallel
+     * @return images in the order of documents
+     */
+    public List<byte[]> transcodeAll(Collection<String> svgStrings) throws TranscoderException {
+        List<Future<byte[]>> futures = new ArrayList<>(svgStrings.size());
+        ExecutorService executor = getWorkers();
+        for (String svg : svgStrings) {
+            futures.add(executor.submit(() -> transcode(svg)));
+        }
+        List<byte[]> images = new ArrayList<>(futures.size());
+        try {
+            for (Future<byte[]> f : futures) {
+                images.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranscoderException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TranscoderException) {
+                throw (TranscoderException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TranscoderException((Exception) cause);
+        } finally {
+            // the rest of the batch is not needed after a failure
+            for (Future<byte[]> f : futures) {
+                f.cancel(true);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * @brief stops the worker threads, images can still be transcoded in the calling thread
+     */
+    @Override
+    public synchronized void close() {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    private void transcode(TranscoderInput input, ByteArrayOutputStream out) throws TranscoderException {
+        PNGTranscoder transcoder;
+        try {
+            transcoder = transcoders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranscoderException(e);
+        }
+        try {
+            transcoder.transcode(input, new TranscoderOutput(out));
+        } finally {
+            transcoders.add(transcoder);
+        }
+    }
+
+    private synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(concurrency, r -> {
+                Thread t = new Thread(r, "png-transcoder");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return workers;
+    }
+}
@@ -1,27 +1,71 @@
 package org.atpfivt.jsyntrax.util;
 
+import org.apache.batik.anim.dom.SVGDOMImplementation;
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
 import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.atpfivt.jsyntrax.generators.DOMRenderer;
+import org.atpfivt.jsyntrax.generators.SVGCanvas;
+import org.w3c.dom.Document;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public final class SVGTranscoder {
     private static final int INIT_STREAM_SIZE = 1024;
+    // diagrams are mostly background, so their PNG images take well under a byte per pixel
+    private static final int PIXELS_PER_BYTE = 4;
+    private static final int MAX_STREAM_SIZE = 1 << 24;
+    // size of the image in the header, the root element is written first
+    private static final Pattern SIZE = Pattern.compile("<svg[^>]*?\\swidth=\"(\\d+)\"\\s+height=\"(\\d+)\"");
+    private static final int HEADER_LENGTH = 512;
 
     private SVGTranscoder() {
 
     }
 
     public static byte[] svg2Png(String svgString) throws TranscoderException {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream(expectedPngSize(svgString));
+        svg2Png(svgString, outStream);
+        return outStream.toByteArray();
+    }
+
+    /**
+     * @brief writes PNG image to the stream, the document is read without encoding it to bytes
+     */
+    public static void svg2Png(String svgString, OutputStream outStream) throws TranscoderException {
         PNGTranscoder transcoder = new PNGTranscoder();
-        ByteArrayInputStream svgStream = new ByteArrayInputStream(svgString.getBytes());
-        ByteArrayOutputStream outStream = new ByteArrayOutputStream(INIT_STREAM_SIZE);
-        transcoder.transcode(new TranscoderInput(svgStream),
+        transcoder.transcode(new TranscoderInput(new StringReader(svgString)),
                 new TranscoderOutput(outStream));
-        return outStream.toByteArray();
+    }
+
+    /**
+     * @brief writes PNG image of the canvas to the stream, the document is built as DOM without SVG text
+     */
+    public static void svg2Png(SVGCanvas canvas, OutputStream outStream) throws TranscoderException {
+        PNGTranscoder transcoder = new PNGTranscoder();
+        Document doc = new DOMRenderer(canvas).generateDocument(SVGDOMImplementation.getDOMImplementation());
+        transcoder.transcode(new TranscoderInput(doc), new TranscoderOutput(outStream));
+    }
+
+    /**
+     * @return initial buffer size for the PNG image of the document, so the buffer rarely grows
+     */
+    static int expectedPngSize(String svgString) {
+        Matcher m = SIZE.matcher(svgString);
+        m.region(0, Math.min(svgString.length(), HEADER_LENGTH));
+        if (!m.find()) {
+            return INIT_STREAM_SIZE;
+        }
+        return expectedPngSize(Long.parseLong(m.group(1)), Long.parseLong(m.group(2)));
+    }
+
+    static int expectedPngSize(long width, long height) {
+        return (int) Math.max(INIT_STREAM_SIZE, Math.min(MAX_STREAM_SIZE, width * height / PIXELS_PER_BYTE));
     }
 }
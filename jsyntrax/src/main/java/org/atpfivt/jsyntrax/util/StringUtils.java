@@ -3,6 +3,7 @@ package org.atpfivt.jsyntrax.util;
 import java.awt.Color;
 import java.awt.Font;
 import java.util.Arrays;
+import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -91,5 +92,14 @@ public final class StringUtils {
         return c.getAlpha() / 255.0;
     }
 
+    /**
+     * @return number with at most three decimals and without trailing zeros, for SVG attributes
+     */
+    public static String formatNumber(double value) {
+        String s = String.format(Locale.ROOT, "%.3f", value);
+        s = s.replaceAll("\\.?0+$", "");
+        return "-0".equals(s) ? "0" : s;
+    }
+
 
 }
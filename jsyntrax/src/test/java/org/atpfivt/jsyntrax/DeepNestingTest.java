@@ -0,0 +1,86 @@
+package org.atpfivt.jsyntrax;
+
+import org.atpfivt.jsyntrax.generators.SVGCanvas;
+import org.atpfivt.jsyntrax.generators.SVGCanvasBuilder;
+import org.atpfivt.jsyntrax.groovy_parser.SyntraxScript;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.atpfivt.jsyntrax.util.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeepNestingTest extends SyntraxScript {
+    private static final int DEPTH = 100_000;
+
+    private SVGCanvasBuilder canvasBuilder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StyleConfig s = new StyleConfig(1, false);
+        JSyntraxTestUtils.updateStyle(s);
+        canvasBuilder = new SVGCanvasBuilder().withStyle(s);
+    }
+
+    @Test
+    void deepOptLayoutTest() {
+        Unit unit = line("x");
+        for (int i = 0; i < DEPTH; ++i) {
+            unit = opt(unit);
+        }
+        SVGCanvas c = canvasBuilder.generateSVG(unit);
+        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box = c.getBoundingBox();
+        assertThat(box.s.f - box.f.f).isGreaterThan(DEPTH);
+    }
+
+    @Test
+    void deepMixedLayoutTest() {
+        Unit unit = line("x");
+        for (int i = 0; i < DEPTH; ++i) {
+            switch (i % 4) {
+                case 0:
+                    unit = choice(unit, "a");
+                    break;
+                case 1:
+                    unit = loop(unit, "b");
+                    break;
+                case 2:
+                    unit = stack(unit, opt("c"));
+                    break;
+                default:
+                    unit = line("d", unit);
+                    break;
+            }
+        }
+        SVGCanvas c = canvasBuilder.generateSVG(unit);
+        Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> box = c.getBoundingBox();
+        assertThat(box.s.s - box.f.s).isGreaterThan(DEPTH);
+    }
+
+    @Test
+    void deepToStringTest() {
+        Line unit = line("x");
+        for (int i = 0; i < DEPTH; ++i) {
+            unit = line(unit, "y");
+        }
+        String text = unit.toString();
+        assertThat(text).startsWith("< Line[ < Line[ ");
+        assertThat(text).endsWith(" ] >\ny ] >");
+        assertThat(text.length()).isEqualTo("< Line[ x ] >".length() + DEPTH * "< Line[ \ny ] >".length());
+    }
+
+    @Test
+    void nestedToStringTest() {
+        Unit unit = line("a", opt("b", indentstack(2, "c")), stack(), "d");
+        assertThat(unit.toString()).isEqualTo(
+                "< Line[ a\n"
+                + "< Opt [ < Line[ b\n"
+                + "< Indentstack, indent = 2 [ c ] > ] > ] >\n"
+                + "< Stack[  ] >\n"
+                + "d ] >");
+    }
+}
@@ -1,6 +1,7 @@
 package org.atpfivt.jsyntrax;
 
 import org.apache.commons.cli.ParseException;
+import org.atpfivt.jsyntrax.styles.TextMetrics;
 import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
@@ -38,6 +39,58 @@ class InputArgumentsTest {
         assertEquals(2.0, inputArguments.getScale(), 0.00001);
     }
 
+    @Test
+    void testCompactParam() throws ParseException {
+        assertFalse(new InputArguments("-i", "foo").isCompact());
+        assertTrue(new InputArguments("-i", "foo", "--compact").isCompact());
+    }
+
+    @Test
+    void testSymbolsParam() throws ParseException {
+        assertFalse(new InputArguments("-i", "foo").isSymbols());
+        assertTrue(new InputArguments("-i", "foo", "--symbols").isSymbols());
+    }
+
+    @Test
+    void testViewBoxParam() throws ParseException {
+        assertFalse(new InputArguments("-i", "foo").isViewBox());
+        assertTrue(new InputArguments("-i", "foo", "--viewbox").isViewBox());
+    }
+
+    @Test
+    void testShadowFilterParam() throws ParseException {
+        assertFalse(new InputArguments("-i", "foo").isShadowFilter());
+        assertTrue(new InputArguments("-i", "foo", "--shadow-filter").isShadowFilter());
+    }
+
+    @Test
+    void testJava2dParam() throws ParseException {
+        assertFalse(new InputArguments("-i", "foo").isJava2d());
+        assertTrue(new InputArguments("-i", "foo", "--java2d").isJava2d());
+    }
+
+    @Test
+    void testCacheDirParam() throws ParseException {
+        assertNull(new InputArguments("-i", "foo").getCacheDir());
+        assertEquals(Paths.get("cache"), new InputArguments("-i", "foo", "--cache-dir", "cache").getCacheDir());
+    }
+
+    @Test
+    void testJsonParam() throws ParseException {
+        assertFalse(new InputArguments("-i", "foo.spec").isJson());
+        assertTrue(new InputArguments("-i", "foo.spec", "--json").isJson());
+        assertTrue(new InputArguments("-i", "foo.JSON").isJson());
+        assertTrue(new InputArguments("foo.json").isJson());
+    }
+
+    @Test
+    void testMetricsParam() throws ParseException {
+        assertEquals(TextMetrics.awt, new InputArguments("-i", "foo").getMetrics());
+        InputArguments inputArguments = new InputArguments("-i", "foo", "--metrics", "table");
+        assertEquals(TextMetrics.table, inputArguments.getMetrics());
+        assertThrows(IllegalArgumentException.class, () -> new InputArguments("--metrics", "foo"));
+    }
+
     @Test
     void testStyleParam() throws ParseException {
         InputArguments inputArguments = new InputArguments("-i", "foo", "-o", "bar", "-s", "baz.ini");
@@ -1,10 +1,12 @@
 package org.atpfivt.jsyntrax;
 
 import org.approvaltests.Approvals;
+import org.atpfivt.jsyntrax.generators.Java2DRenderer;
 import org.atpfivt.jsyntrax.generators.SVGCanvas;
 import org.atpfivt.jsyntrax.generators.SVGCanvasBuilder;
 import org.atpfivt.jsyntrax.groovy_parser.SyntraxScript;
 import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.units.Unit;
 import org.atpfivt.jsyntrax.units.tracks.Choice;
 import org.atpfivt.jsyntrax.units.tracks.Line;
 import org.atpfivt.jsyntrax.units.tracks.loop.Loop;
@@ -17,9 +19,16 @@ import org.atpfivt.jsyntrax.units.tracks.stack.Stack;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.atpfivt.jsyntrax.JSyntraxTestUtils.OPTIONS;
 
 
@@ -42,6 +51,14 @@ public class JSyntraxTest extends SyntraxScript {
         Approvals.verify(result, OPTIONS);
     }
 
+    @Test
+    void noneInLineTest() {
+        Line l = line("a", null, "b");
+        SVGCanvas c = canvasBuilder.generateSVG(l);
+        String result = c.generateSVG();
+        Approvals.verify(result, OPTIONS);
+    }
+
     @Test
     void difficultLoopTest() {
         Loop l = loop(line("/forward", "path"), line("backward", "path"));
@@ -154,4 +171,132 @@ public class JSyntraxTest extends SyntraxScript {
         String result = c.generateSVG();
         Approvals.verify(result, OPTIONS);
     }
-}
\ No newline at end of file
+
+    @Test
+    void compactTest() throws IOException {
+        StyleConfig s = new StyleConfig(1, false);
+        JSyntraxTestUtils.updateStyle(s);
+        s.setCompact(true);
+        Configuration config = jsyntrax(stack(
+                line("attribute", "/(attribute) identifier", "of"),
+                line(choice(toploop("/entity_designator", ","), "others", "all"), ':'),
+                line(opt("/entity_class"), "is", loop("expression", ","), ';')
+                ),
+                Map.of("entity_class", "https://www.google.com/#q=vhdl+entity+class"));
+        SVGCanvas c = new SVGCanvasBuilder().withStyle(s).generateSVG(config);
+        String result = c.generateSVG();
+        Approvals.verify(result, OPTIONS);
+    }
+
+    @Test
+    void symbolsTest() throws IOException {
+        StyleConfig s = new StyleConfig(1, false);
+        JSyntraxTestUtils.updateStyle(s);
+        s.setSymbols(true);
+        Configuration config = jsyntrax(stack(
+                line("SELECT", loop("/expr", ","), "FROM", loop("table", ",")),
+                line(opt("WHERE", "/expr"), opt("ORDER", "BY", loop("/expr", ",")))
+                ),
+                Map.of("expr", "https://en.wikipedia.org/wiki/Expression"));
+        SVGCanvas c = new SVGCanvasBuilder().withStyle(s).generateSVG(config);
+        String result = c.generateSVG();
+        Approvals.verify(result, OPTIONS);
+    }
+
+    @Test
+    void viewBoxScaleTest() throws IOException {
+        StyleConfig s = new StyleConfig(2.5, false);
+        JSyntraxTestUtils.updateStyle(s);
+        s.setViewBoxScale(true);
+        Line unit = line("SELECT", opt("DISTINCT"), loop("expr", ","), "FROM", "/table");
+        SVGCanvas c = new SVGCanvasBuilder().withStyle(s).generateSVG(unit);
+        String result = c.generateSVG();
+        Approvals.verify(result, OPTIONS);
+    }
+
+    @Test
+    void shadowFilterTest() throws IOException {
+        StyleConfig s = new StyleConfig(1, false);
+        JSyntraxTestUtils.updateStyle(s);
+        s.setShadowFilter(true);
+        Line unit = line("SELECT", opt("DISTINCT"), loop("expr", ","), "FROM", "/table", "/t");
+        SVGCanvas c = new SVGCanvasBuilder().withStyle(s).generateSVG(unit);
+        String result = c.generateSVG();
+        Approvals.verify(result, OPTIONS);
+    }
+
+    @Test
+    void sameCanvasTwiceTest() throws IOException {
+        // Given
+        StyleConfig s = new StyleConfig(2, false);
+        JSyntraxTestUtils.updateStyle(s);
+        Unit diagram = line("/start", opt("a", "b"), "end");
+        SVGCanvas canvas = new SVGCanvasBuilder().withStyle(s).generateSVG(diagram);
+
+        // When
+        String first = canvas.generateSVG();
+        BufferedImage image = new Java2DRenderer(canvas).generateImage();
+        String second = canvas.generateSVG();
+
+        // Then: the page is placed once, later outputs are not moved or scaled again
+        SVGCanvas freshCanvas = new SVGCanvasBuilder().withStyle(s).generateSVG(diagram);
+        BufferedImage fresh = new Java2DRenderer(freshCanvas).generateImage();
+        assertThat(second).isEqualTo(first);
+        assertThat(image.getWidth()).isEqualTo(fresh.getWidth());
+        assertThat(image.getHeight()).isEqualTo(fresh.getHeight());
+        assertThat(first).contains("width=\"" + fresh.getWidth() + "\"");
+    }
+
+    @Test
+    void streamedSvgTest() throws IOException {
+        Object[] items = new Object[500];
+        for (int i = 0; i < items.length; ++i) {
+            items[i] = i % 2 == 0 ? "/ключ" + i : opt("value" + i);
+        }
+        String expected = canvasBuilder.generateSVG(line(items)).generateSVG();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        canvasBuilder.generateSVG(line(items)).generateSVG(out);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+    }
+
+    @Test
+    void streamedCompactSvgTest() throws IOException {
+        StyleConfig s = new StyleConfig(1, false);
+        JSyntraxTestUtils.updateStyle(s);
+        s.setCompact(true);
+        assertStreamed(s);
+    }
+
+    @Test
+    void streamedShadowFilterSvgTest() throws IOException {
+        StyleConfig s = new StyleConfig(1, false);
+        JSyntraxTestUtils.updateStyle(s);
+        s.setShadowFilter(true);
+        assertStreamed(s);
+        s.setCompact(true);
+        assertStreamed(s);
+    }
+
+    private void assertStreamed(StyleConfig s) throws IOException {
+        Object[] items = new Object[500];
+        for (int i = 0; i < items.length; ++i) {
+            items[i] = i % 2 == 0 ? "/ключ" + i : opt("value" + i);
+        }
+        SVGCanvasBuilder builder = new SVGCanvasBuilder().withStyle(s);
+        String expected = builder.generateSVG(line(items)).generateSVG();
+
+        List<String> chunks = new ArrayList<>();
+        StringWriter out = new StringWriter() {
+            @Override
+            public void write(String str) {
+                chunks.add(str);
+                super.write(str);
+            }
+        };
+        builder.generateSVG(line(items)).generateSVG(out);
+        assertThat(out.toString()).isEqualTo(expected);
+        // the document is written as it is made, not in one piece at the end
+        assertThat(chunks).hasSizeGreaterThan(1);
+    }
+}
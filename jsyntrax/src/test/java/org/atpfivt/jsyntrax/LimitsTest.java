@@ -0,0 +1,133 @@
+package org.atpfivt.jsyntrax;
+
+import org.atpfivt.jsyntrax.exceptions.LimitExceededException;
+import org.atpfivt.jsyntrax.generators.SVGCanvasBuilder;
+import org.atpfivt.jsyntrax.groovy_parser.Parser;
+import org.atpfivt.jsyntrax.parser.SpecParser;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.nodes.Node;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LimitsTest {
+    private static final Duration TIMEOUT = Duration.ofMillis(200);
+    private static final int DEPTH = 50;
+    private static final int MAX_DEPTH = 10;
+    private static final int MAX_UNITS = 100;
+    private static final int DOUBLINGS = 40;
+
+    @Test
+    void trackCountsTest() {
+        Unit unit = SpecParser.parse("line('a', opt('b', 'c'), 'a')").getNode().getTrack();
+
+        // line, opt, line of opt units and four nodes
+        assertThat(unit.getUnitCount()).isEqualTo(7);
+        assertThat(unit.getDepth()).isEqualTo(3);
+        assertThat(new Node("a").getDepth()).isZero();
+        assertThat(new Node("a").getUnitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void endlessScriptTimesOutTest() {
+        Limits limits = Limits.NONE.withTimeout(TIMEOUT);
+
+        assertThatThrownBy(() -> new Parser("while (true) {}\nline('a')", limits))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessage("Diagram takes longer than 200 ms")
+                .extracting(e -> ((LimitExceededException) e).getLimit())
+                .isEqualTo(LimitExceededException.Limit.time);
+        // the interrupt of the timeout is not left to the caller
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
+    @Test
+    void scriptInTimeTest() {
+        Parser parser = new Parser("def a = 'a'\nline(a, 'b')", Limits.NONE.withTimeout(TIMEOUT));
+
+        assertThat(parser.getNode()).isEqualTo(new Parser("line('a', 'b')").getNode());
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
+    @Test
+    void scriptUnitsTest() {
+        Limits limits = Limits.NONE.withMaxUnits(MAX_UNITS);
+
+        assertThatThrownBy(() -> new Parser(
+                "def a = []\nfor (int i = 0; i < 200; ++i) { a += \"n$i\" }\nchoice(*a)", limits))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessage("Diagram has more than 100 units");
+        // units repeated by a script count every time
+        assertThatThrownBy(() -> new Parser(
+                "def a = line('x', 'x')\nfor (int i = 0; i < " + DOUBLINGS + "; ++i) { a = line(a, a) }\na", limits))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessage("Diagram has more than 100 units");
+    }
+
+    @Test
+    void depthTest() {
+        Limits limits = Limits.NONE.withMaxDepth(MAX_DEPTH);
+        String spec = nestedOpt(DEPTH);
+
+        assertThatThrownBy(() -> SpecParser.parse(spec, limits))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessage("Diagram is nested deeper than 10 tracks");
+        assertThatThrownBy(() -> new Parser("def x = 'x'\n" + spec, limits))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessage("Diagram is nested deeper than 10 tracks");
+        assertThat(SpecParser.parse(nestedOpt(2), limits)).isNotNull();
+    }
+
+    @Test
+    void layoutUnitsTest() throws IOException {
+        Unit unit = new Line(List.of(new Node("x"), new Node("x")));
+        for (int i = 0; i < DOUBLINGS; ++i) {
+            unit = new Line(List.of(unit, unit));
+        }
+        Unit root = unit;
+        SVGCanvasBuilder builder = new SVGCanvasBuilder().withLimits(Limits.NONE.withMaxUnits(MAX_UNITS));
+
+        // the tree is small, the laid out diagram would not fit any memory
+        assertThatThrownBy(() -> builder.generateSVG(root))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessage("Diagram has more than 100 units");
+    }
+
+    @Test
+    void generateWithLimitsTest() throws IOException {
+        Limits limits = Limits.NONE.withTimeout(TIMEOUT).withMaxUnits(MAX_UNITS).withMaxDepth(MAX_DEPTH);
+        String spec = "line('a', opt('b'))";
+        StyleConfig style = new StyleConfig(1, false);
+
+        assertThat(Main.generateSVG(null, style, spec, null, limits))
+                .isEqualTo(Main.generateSVG(null, style, spec));
+        assertThatThrownBy(() -> Main.generateSVG(null, style, nestedOpt(DEPTH), null, limits))
+                .isInstanceOf(LimitExceededException.class);
+    }
+
+    @Test
+    void invalidLimitsTest() {
+        assertThatThrownBy(() -> Limits.NONE.withTimeout(Duration.ZERO)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Limits.NONE.withMaxUnits(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Limits.NONE.withMaxDepth(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String nestedOpt(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; ++i) {
+            sb.append("opt(");
+        }
+        sb.append("'x'");
+        for (int i = 0; i < depth; ++i) {
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
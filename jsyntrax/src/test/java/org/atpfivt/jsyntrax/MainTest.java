@@ -11,6 +11,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,6 +30,24 @@ class MainTest {
         }
     }
 
+    @Test
+    void testJsonInput() throws URISyntaxException, IOException {
+        Path jsonPath = Paths.get(MainTest.class.getResource("jsyntrax.json").toURI());
+        Path specPath = Paths.get(MainTest.class.getResource("jsyntrax.spec").toURI());
+        Path jsonOut = Files.createTempFile("jsyntrax-test-json", ".svg");
+        Path specOut = Files.createTempFile("jsyntrax-test-spec", ".svg");
+        try {
+            Main.main("-o", jsonOut.toString(), jsonPath.toString());
+            Main.main("-o", specOut.toString(), specPath.toString());
+            String svg = Files.readString(jsonOut);
+            validateSVG(svg);
+            assertEquals(Files.readString(specOut), svg);
+        } finally {
+            Files.delete(jsonOut);
+            Files.delete(specOut);
+        }
+    }
+
     @Test
     void testWriteHelp() throws IOException {
         final PrintStream standardOut = System.out;
@@ -72,6 +92,25 @@ class MainTest {
         }
     }
 
+    @Test
+    void testOutputReplacedWhenWritten() throws URISyntaxException, IOException {
+        Path inputPath = Paths.get(MainTest.class.getResource("jsyntrax.spec").toURI());
+        Path dir = Files.createTempDirectory("jsyntrax-test");
+        Path outPath = dir.resolve("out.svg");
+        try {
+            Files.writeString(outPath, "old");
+            Main.main("-o", outPath.toString(), inputPath.toString());
+            validateSVG(Files.readString(outPath));
+            // the result was written next to the output and moved over it
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(List.of(outPath), files.collect(Collectors.toList()));
+            }
+        } finally {
+            Files.deleteIfExists(outPath);
+            Files.delete(dir);
+        }
+    }
+
     @ValueSource(strings = {".png", ".PNG", ".PnG"})
     @ParameterizedTest
     void testPngByOutFileExtention(String ext) throws IOException, URISyntaxException {
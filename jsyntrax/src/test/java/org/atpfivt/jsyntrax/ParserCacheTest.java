@@ -0,0 +1,46 @@
+package org.atpfivt.jsyntrax;
+
+import org.atpfivt.jsyntrax.groovy_parser.Parser;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParserCacheTest {
+    private static final String SPEC = "title('cached')\nstack(line('a', opt('b')), loop('c', None))";
+
+    @Test
+    void sameTextIsCompiledOnce() {
+        Parser first = new Parser(SPEC);
+        Parser second = new Parser(SPEC);
+
+        assertThat(second.getScriptClass()).isSameAs(first.getScriptClass());
+        // every parse runs its own script
+        assertThat(second.getNode().getTrack()).isEqualTo(first.getNode().getTrack());
+        assertThat(second.getNode().getTrack()).isNotSameAs(first.getNode().getTrack());
+        assertThat(second.getTitle()).isEqualTo("cached");
+    }
+
+    @Test
+    void differentTextIsCompiledAgain() {
+        Parser first = new Parser(SPEC);
+        Parser second = new Parser(SPEC + " ");
+
+        assertThat(second.getScriptClass()).isNotSameAs(first.getScriptClass());
+    }
+
+    @Test
+    void failedCompilationIsNotCached() {
+        String spec = "line('a'";
+
+        assertThatThrownBy(() -> new Parser(spec)).isInstanceOf(CompilationFailedException.class);
+        assertThatThrownBy(() -> new Parser(spec)).isInstanceOf(CompilationFailedException.class);
+    }
+
+    @Test
+    void importsAreStillForbidden() {
+        assertThatThrownBy(() -> new Parser("import java.io.File\nline(new File('a').name)"))
+                .isInstanceOf(CompilationFailedException.class);
+    }
+}
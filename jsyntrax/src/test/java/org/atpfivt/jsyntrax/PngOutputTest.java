@@ -1,11 +1,17 @@
 package org.atpfivt.jsyntrax;
 
+import org.apache.batik.transcoder.TranscoderException;
 import org.approvaltests.Approvals;
 import org.approvaltests.namer.NamedEnvironment;
 import org.approvaltests.namer.NamerFactory;
 import org.approvaltests.writers.ApprovalBinaryFileWriter;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.util.SVGTranscoder;
 import org.junit.jupiter.api.Test;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
@@ -13,6 +19,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 
 public class PngOutputTest {
     @Test
@@ -34,4 +42,60 @@ public class PngOutputTest {
             Files.deleteIfExists(outPath);
         }
     }
+
+    @Test
+    public void documentTest() throws IOException, URISyntaxException, TranscoderException {
+        // Given
+        String spec = Files.readString(Paths.get(MainTest.class.getResource("test_spec.txt").toURI()));
+        ByteArrayOutputStream fromText = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromDocument = new ByteArrayOutputStream();
+
+        // When
+        SVGTranscoder.svg2Png(Main.generateSVG("title", new StyleConfig(1, false), spec), fromText);
+        SVGTranscoder.svg2Png(Main.generateCanvas("title", new StyleConfig(1, false), spec), fromDocument);
+
+        // Then
+        assertThat(fromDocument.toByteArray()).isEqualTo(fromText.toByteArray());
+    }
+
+    @Test
+    public void java2dTest() throws IOException, URISyntaxException {
+        // Given
+        Path inputPath = Paths.get(MainTest.class.getResource("test_spec.txt").toURI());
+        Path configPath = Paths.get(MainTest.class.getResource("test_style_config.ini").toURI());
+        Path batikPath = Files.createTempFile("jsyntrax-test-output", ".png");
+        Path java2dPath = Files.createTempFile("jsyntrax-test-output", ".png");
+
+        // When
+        try {
+            Main.main("-o", batikPath.toString(), inputPath.toString(), "-s", configPath.toString());
+            Main.main("-o", java2dPath.toString(), inputPath.toString(), "-s", configPath.toString(), "--java2d");
+            BufferedImage batik = ImageIO.read(batikPath.toFile());
+            BufferedImage java2d = ImageIO.read(java2dPath.toFile());
+
+            // Then: the same picture up to antialiasing
+            assertThat(java2d.getWidth()).isEqualTo(batik.getWidth());
+            assertThat(java2d.getHeight()).isEqualTo(batik.getHeight());
+            int different = 0;
+            for (int y = 0; y < batik.getHeight(); ++y) {
+                for (int x = 0; x < batik.getWidth(); ++x) {
+                    if (maxChannelDifference(batik.getRGB(x, y), java2d.getRGB(x, y)) > 64) {
+                        ++different;
+                    }
+                }
+            }
+            assertThat(different).isLessThan(batik.getWidth() * batik.getHeight() / 50);
+        } finally {
+            Files.deleteIfExists(batikPath);
+            Files.deleteIfExists(java2dPath);
+        }
+    }
+
+    private static int maxChannelDifference(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            max = Math.max(max, Math.abs(((a >> shift) & 0xff) - ((b >> shift) & 0xff)));
+        }
+        return max;
+    }
 }
@@ -0,0 +1,103 @@
+package org.atpfivt.jsyntrax;
+
+import org.atpfivt.jsyntrax.groovy_parser.Parser;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpecCacheTest {
+    private static final String SPEC = "title('cached')\n"
+            + "jsyntrax(stack(line('a', opt('/b')), loop('c', None)), ['a': 'http://a'])";
+    private static final int TITLE_LENGTH_OFFSET = 4 + 4 + 4 + 64 + 1;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void storedSpecIsLoadedTest() throws IOException {
+        Parser parser = new Parser(SPEC);
+        SpecCache cache = new SpecCache(dir, "1.0");
+
+        assertThat(cache.load(SPEC)).isNull();
+        cache.store(SPEC, parser.getNode(), parser.getTitle());
+        SpecCache.Entry entry = new SpecCache(dir, "1.0").load(SPEC);
+
+        assertThat(entry).isNotNull();
+        assertThat(entry.getConfiguration()).isEqualTo(parser.getNode());
+        assertThat(entry.getConfiguration().getUrlMap()).isEqualTo(Map.of("a", "http://a"));
+        assertThat(entry.getTitle()).isEqualTo("cached");
+        assertThat(cache.load(SPEC + " ")).isNull();
+    }
+
+    @Test
+    void otherVersionIsNotLoadedTest() throws IOException {
+        Parser parser = new Parser(SPEC);
+        new SpecCache(dir, "1.0").store(SPEC, parser.getNode(), null);
+
+        assertThat(new SpecCache(dir, "1.0").load(SPEC).getTitle()).isNull();
+        assertThat(new SpecCache(dir, "1.1").load(SPEC)).isNull();
+    }
+
+    @Test
+    void brokenFileIsNotLoadedTest() throws IOException {
+        Parser parser = new Parser(SPEC);
+        SpecCache cache = new SpecCache(dir, "1.0");
+        cache.store(SPEC, parser.getNode(), parser.getTitle());
+        Path file = files().get(0);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length / 2));
+
+        assertThat(cache.load(SPEC)).isNull();
+        // and is replaced on the next store
+        cache.store(SPEC, parser.getNode(), parser.getTitle());
+        assertThat(cache.load(SPEC)).isNotNull();
+        assertThat(files()).hasSize(1);
+    }
+
+    @Test
+    void hugeLengthIsNotLoadedTest() throws IOException {
+        Parser parser = new Parser(SPEC);
+        SpecCache cache = new SpecCache(dir, "1.0");
+        cache.store(SPEC, parser.getNode(), parser.getTitle());
+        Path file = files().get(0);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        // magic, format, length and hash of the key, flag of the title and then the length of the title
+        data.putInt(TITLE_LENGTH_OFFSET, Integer.MAX_VALUE);
+        Files.write(file, data.array());
+
+        assertThat(cache.load(SPEC)).isNull();
+    }
+
+    @Test
+    void cachedSpecGivesSameDiagramTest() throws IOException, URISyntaxException {
+        String spec = Files.readString(Paths.get(MainTest.class.getResource("test_spec.txt").toURI()));
+        SpecCache cache = new SpecCache(dir.resolve("cache"));
+
+        String parsed = Main.generateSVG(null, new StyleConfig(1, false), spec, cache);
+        assertThat(dir.resolve("cache")).isDirectory();
+        String cached = Main.generateSVG(null, new StyleConfig(1, false), spec, cache);
+
+        assertThat(cached).isEqualTo(parsed);
+        assertThat(cached).isEqualTo(Main.generateSVG(null, new StyleConfig(1, false), spec));
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.JSyntraxTestUtils;
+import org.atpfivt.jsyntrax.groovy_parser.SyntraxScript;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BandedPngTest extends SyntraxScript {
+    private static final String HEAP = "-Xmx64m";
+    private static final long HEAP_BYTES = 64L << 20;
+    private static final int LINES = 40;
+    private static final int NODES = 12;
+
+    @Test
+    void bandsTest() throws IOException {
+        assertSameAsImage(new StyleConfig(1, false));
+    }
+
+    @Test
+    void transparentBandsTest() throws IOException {
+        assertSameAsImage(new StyleConfig(2, true));
+    }
+
+    @Test
+    void viewBoxBandsTest() throws IOException {
+        StyleConfig s = new StyleConfig(1.5, false);
+        s.setViewBoxScale(true);
+        assertSameAsImage(s);
+    }
+
+    @Test
+    void smallHeapTest() throws IOException, InterruptedException {
+        Path out = Files.createTempFile("jsyntrax-test-output", ".png");
+        try {
+            // Given: a child JVM with less heap than the pixels of the image take
+            Process p = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    HEAP, "-Djava.awt.headless=true",
+                    "-cp", System.getProperty("java.class.path"),
+                    BandedPngTest.class.getName(), out.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+
+            // When
+            assertThat(p.waitFor(5, TimeUnit.MINUTES)).isTrue();
+
+            // Then
+            assertThat(p.exitValue()).isEqualTo(0);
+            try (ImageInputStream in = ImageIO.createImageInputStream(out.toFile())) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+                ImageReader reader = readers.next();
+                reader.setInput(in);
+                assertThat(4L * reader.getWidth(0) * reader.getHeight(0)).isGreaterThan(HEAP_BYTES);
+                // decoding the whole stream checks its data and checksums
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(8, 8, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                assertThat(image.getWidth()).isEqualTo((reader.getWidth(0) + 7) / 8);
+                reader.dispose();
+            }
+        } finally {
+            Files.deleteIfExists(out);
+        }
+    }
+
+    /**
+     * @brief writes a PNG image of a large diagram to the file given as the only argument
+     */
+    public static void main(String[] args) throws IOException {
+        StyleConfig s = new StyleConfig(3, false);
+        JSyntraxTestUtils.updateStyle(s);
+        SVGCanvas canvas = new SVGCanvasBuilder().withStyle(s).generateSVG(new BandedPngTest().largeDiagram());
+        try (OutputStream out = Files.newOutputStream(new File(args[0]).toPath())) {
+            new Java2DRenderer(canvas).generatePNG(out);
+        }
+    }
+
+    private Unit largeDiagram() {
+        Object[] lines = new Object[LINES];
+        for (int i = 0; i < LINES; ++i) {
+            Object[] nodes = new Object[NODES];
+            for (int j = 0; j < NODES; ++j) {
+                nodes[j] = j % 5 == 0 ? opt("node" + j) : "/node" + i;
+            }
+            lines[i] = line(nodes);
+        }
+        return stack(lines);
+    }
+
+    private void assertSameAsImage(StyleConfig s) throws IOException {
+        // Given
+        JSyntraxTestUtils.updateStyle(s);
+        Unit diagram = stack(line("/start", opt("a", "b")), loop(choice("c", "/d"), "e"), indentstack(2, "f", "end"));
+        SVGCanvas canvas = new SVGCanvasBuilder().withStyle(s).generateSVG(diagram);
+        Java2DRenderer renderer = new Java2DRenderer(canvas);
+        BufferedImage expected = renderer.generateImage();
+
+        // When: bands of seven rows, so every band edge cuts through some element
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.generatePNG(out, 7 * 4 * expected.getWidth());
+        BufferedImage banded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+        // Then
+        assertThat(banded.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(banded.getHeight()).isEqualTo(expected.getHeight());
+        for (int y = 0; y < expected.getHeight(); ++y) {
+            for (int x = 0; x < expected.getWidth(); ++x) {
+                assertThat(banded.getRGB(x, y)).as("pixel %d, %d", x, y).isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.groovy_parser.SyntraxScript;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.units.Unit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @brief compares layout of a grammar with heavy repetition with and without the layout memo
+ * @details Optional arguments are the number of rules and the number of measured runs.
+ * Every rule repeats the same list tail several times, as grammars converted from BNF usually do.
+ */
+public final class LayoutMemoBenchmark extends SyntraxScript {
+    private static final int WARMUP = 5;
+
+    private LayoutMemoBenchmark() { }
+
+    public static void main(String[] args) throws IOException {
+        int rules = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Unit grammar = new LayoutMemoBenchmark().grammar(rules);
+        StyleConfig style = new StyleConfig(1, false);
+
+        for (int i = 0; i < WARMUP; ++i) {
+            layout(grammar, style, true);
+            layout(grammar, style, false);
+        }
+        long[] times = new long[2];
+        int elements = 0;
+        for (int i = 0; i < runs; ++i) {
+            for (int memo = 0; memo < 2; ++memo) {
+                long start = System.nanoTime();
+                elements = layout(grammar, style, memo == 0).getElementCount();
+                times[memo] += System.nanoTime() - start;
+            }
+        }
+        System.out.printf("rules: %d, elements: %d%n", rules, elements);
+        System.out.printf("with memo:    %.2f ms%n", times[0] / 1e6 / runs);
+        System.out.printf("without memo: %.2f ms%n", times[1] / 1e6 / runs);
+    }
+
+    private static SVGCanvas layout(Unit grammar, StyleConfig style, boolean memo) throws IOException {
+        return new SVGCanvasBuilder().withStyle(style).withLayoutMemo(memo).generateSVG(grammar);
+    }
+
+    private Unit grammar(int rules) {
+        List<Object> lines = new ArrayList<>();
+        for (int i = 0; i < rules; ++i) {
+            lines.add(line("rule" + i, "(", tail(), ")",
+                    choice(tail(), line("WITH", tail()), "*"),
+                    opt("WHERE", tail()),
+                    loop(line("expr", tail()), ";")));
+        }
+        return stack(lines.toArray());
+    }
+
+    private Unit tail() {
+        return opt("expr", loop(line(",", "expr", choice(null, "ASC", "DESC")), null));
+    }
+}
@@ -0,0 +1,74 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.JSyntraxTestUtils;
+import org.atpfivt.jsyntrax.groovy_parser.SyntraxScript;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.atpfivt.jsyntrax.units.nodes.Node;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LayoutMemoTest extends SyntraxScript {
+
+    private static String render(Unit unit, boolean layoutMemo) throws IOException {
+        StyleConfig s = new StyleConfig(1, false);
+        JSyntraxTestUtils.updateStyle(s);
+        return new SVGCanvasBuilder().withStyle(s).withLayoutMemo(layoutMemo).generateSVG(unit).generateSVG();
+    }
+
+    private static void assertSameLayout(Unit unit) throws IOException {
+        assertThat(render(unit, true)).isEqualTo(render(unit, false));
+    }
+
+    @Test
+    void structuralKeysTest() {
+        Unit tail = line(",", "expr");
+        Unit first = opt("expr", loop(tail, null));
+        Unit other = opt("expr", loop(line(";", "expr"), null));
+        Unit built = new Line(List.of(new Node(","), new Node("expr")));
+        LayoutMemo memo = new LayoutMemo(line(first, first, other, built));
+
+        assertThat(memo.key(first, true)).isNotEqualTo(LayoutMemo.NONE);
+        assertThat(memo.key(first, false)).isNotEqualTo(memo.key(first, true));
+        assertThat(memo.key(other, true)).isEqualTo(LayoutMemo.NONE);
+        assertThat(memo.key(tail, true)).isNotEqualTo(LayoutMemo.NONE);
+        assertThat(memo.key(built, true)).isEqualTo(memo.key(tail, true));
+        assertThat(memo.key(tail, true)).isNotEqualTo(memo.key(first, true));
+    }
+
+    @Test
+    void repeatedTailsTest() throws IOException {
+        assertSameLayout(line("f", "(", opt("expr", loop(line(",", "expr"), null)), ")",
+                choice(opt("expr", loop(line(",", "expr"), null)), "*"),
+                toploop(opt("expr", loop(line(",", "expr"), null)), opt("expr", loop(line(",", "expr"), null)))));
+    }
+
+    @Test
+    void repeatedStacksTest() throws IOException {
+        assertSameLayout(stack(
+                line("a", stack("b", opt("c"))),
+                line("a", stack("b", opt("c"))),
+                rightstack(line("d", indentstack(2, "e", opt("f"))), line("d", indentstack(2, "e", opt("f")))),
+                opt("g"),
+                line("a", stack("b", opt("c")))));
+    }
+
+    @Test
+    void repeatedEmptyTracksTest() throws IOException {
+        assertSameLayout(line(choice(), stack(), "a", choice(), stack(), line(), line()));
+    }
+
+    @Test
+    void linkedNodesTest() throws IOException {
+        Unit unit = jsyntrax(line(opt("a"), opt("a")), Map.of("a", "https://example.com"));
+        String svg = render(unit, true);
+        assertThat(svg).isEqualTo(render(unit, false));
+        assertThat(svg.split("https://example.com", -1)).hasSize(3);
+    }
+}
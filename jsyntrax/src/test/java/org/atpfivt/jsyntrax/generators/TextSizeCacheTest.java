@@ -0,0 +1,39 @@
+package org.atpfivt.jsyntrax.generators;
+
+import org.atpfivt.jsyntrax.util.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Font;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextSizeCacheTest {
+    private final Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 14);
+
+    @Test
+    void repeatedTextIsMeasuredOnce() {
+        TextSizeCache cache = new TextSizeCache(16);
+        Pair<Integer, Integer> first = cache.getTextSize("SELECT", font);
+        Pair<Integer, Integer> second = cache.getTextSize("SELECT", font);
+        cache.getTextSize("SELECT", font.deriveFont(Font.BOLD));
+
+        assertThat(second.f).isEqualTo(first.f);
+        assertThat(second.s).isEqualTo(first.s);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void cacheIsBounded() {
+        TextSizeCache cache = new TextSizeCache(2);
+        cache.getTextSize("a", font);
+        cache.getTextSize("b", font);
+        cache.getTextSize("a", font);
+        cache.getTextSize("c", font);
+        cache.getTextSize("a", font);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(3);
+    }
+}
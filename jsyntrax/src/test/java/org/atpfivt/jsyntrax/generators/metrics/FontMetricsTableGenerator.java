@@ -0,0 +1,63 @@
+package org.atpfivt.jsyntrax.generators.metrics;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * @brief writes the table read by TableFontMetrics
+ * @details Run with the target file as the only argument.
+ * Advances are measured with AWT at font size 1000.
+ */
+public final class FontMetricsTableGenerator {
+    private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    private static final String[] FAMILIES = {"Sans", "Times"};
+    private static final String[] STYLES = {"plain", "bold", "italic", "bolditalic"};
+    private static final int[][] RANGES = {{0x20, 0x7E}, {0xA0, 0xFF}, {0x400, 0x45F}, {0x2010, 0x2027}};
+
+    private FontMetricsTableGenerator() { }
+
+    public static void main(String[] args) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8))) {
+            out.println("# Text metrics in 1/1000 of font size, generated by FontMetricsTableGenerator.");
+            out.println("# range <first code point> <advances...>; default is used for other characters.");
+            for (String family : FAMILIES) {
+                for (int style = 0; style < STYLES.length; ++style) {
+                    Font font = new Font(family, style, 1000);
+                    Rectangle2D bounds = font.getStringBounds("M", RENDER_CONTEXT);
+                    out.println();
+                    out.println("face " + family + " " + STYLES[style]);
+                    out.println("ascent " + format(-bounds.getY()));
+                    out.println("height " + format(bounds.getHeight()));
+                    double ascii = 0;
+                    for (int cp = RANGES[0][0]; cp <= RANGES[0][1]; ++cp) {
+                        ascii += advance(font, cp);
+                    }
+                    out.println("default " + format(ascii / (RANGES[0][1] - RANGES[0][0] + 1)));
+                    for (int[] range : RANGES) {
+                        StringBuilder sb = new StringBuilder("range ").append(range[0]);
+                        for (int cp = range[0]; cp <= range[1]; ++cp) {
+                            sb.append(' ').append(format(advance(font, cp)));
+                        }
+                        out.println(sb);
+                    }
+                }
+            }
+        }
+    }
+
+    private static double advance(Font font, int cp) {
+        return font.getStringBounds(new String(Character.toChars(cp)), RENDER_CONTEXT).getWidth();
+    }
+
+    private static String format(double value) {
+        String s = String.format(Locale.ROOT, "%.3f", value);
+        return s.replaceAll("\\.?0+$", "");
+    }
+}
@@ -0,0 +1,43 @@
+package org.atpfivt.jsyntrax.generators.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TableFontMetricsTest {
+    private final TableFontMetrics metrics = TableFontMetrics.getInstance();
+
+    @Test
+    void boundsScaleWithFontSize() {
+        Rectangle2D small = metrics.getStringBounds("SELECT", new Font("Sans", Font.PLAIN, 14));
+        Rectangle2D large = metrics.getStringBounds("SELECT", new Font("Sans", Font.PLAIN, 28));
+
+        assertThat(small.getWidth()).isPositive();
+        assertThat(small.getY()).isNegative();
+        assertThat(large.getWidth()).isCloseTo(2 * small.getWidth(), within(1e-9));
+        assertThat(large.getHeight()).isCloseTo(2 * small.getHeight(), within(1e-9));
+    }
+
+    @Test
+    void widthDependsOnFace() {
+        Rectangle2D plain = metrics.getStringBounds("SELECT", new Font("Sans", Font.PLAIN, 14));
+        Rectangle2D bold = metrics.getStringBounds("SELECT", new Font("Sans", Font.BOLD, 14));
+        Rectangle2D unknown = metrics.getStringBounds("SELECT", new Font("No Such Font", Font.BOLD, 14));
+
+        assertThat(bold.getWidth()).isGreaterThan(plain.getWidth());
+        assertThat(unknown).isEqualTo(bold);
+    }
+
+    @Test
+    void unknownCharactersHaveWidth() {
+        Font font = new Font("Times", Font.PLAIN, 14);
+
+        assertThat(metrics.getStringBounds("中文", font).getWidth())
+                .isGreaterThan(metrics.getStringBounds("中", font).getWidth());
+        assertThat(metrics.getStringBounds("", font).getWidth()).isZero();
+    }
+}
@@ -0,0 +1,191 @@
+package org.atpfivt.jsyntrax.parser;
+
+import org.atpfivt.jsyntrax.Limits;
+import org.atpfivt.jsyntrax.exceptions.JsonSpecException;
+import org.atpfivt.jsyntrax.exceptions.LimitExceededException;
+import org.atpfivt.jsyntrax.groovy_parser.Parser;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonSpecParserTest {
+    private static final int DEPTH = 100_000;
+    private static final int NODES = 1_000_000;
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', quoteCharacter = '`', value = {
+        "{\"line\": [\"a\", \"/b\", null]}                                | line('a', '/b', None)",
+        "{\"stack\": [{\"line\": [\"a\", {\"opt\": [\"b\", \"c\"]}]}, {\"loop\": [{\"choice\": [\"d\", \"/e\"]}, null]}]}"
+            + " | stack(line('a', opt('b', 'c')), loop(choice('d', '/e'), None))",
+        "{\"toploop\": [{\"optx\": [\"a\"]}, {\"rightstack\": [\"b\", {\"indent\": 3, \"indentstack\": [\"c\", \"c\"]}]}]}"
+            + " | toploop(optx('a'), rightstack('b', indentstack(3, 'c', 'c')))",
+        "{\"line\": []}                                                   | line()",
+        "{\"opt\": []}                                                    | opt()",
+        "{\"line\": [\"\\\"\\\\\\/\\n\\t\\u00fc\", \"ü\"]}                  | line('\"\\\\/\\n\\t\\u00fc', 'ü')",
+        "{\"title\": \"t\", \"line\": [\"a\"]}                            | title('t'); line('a')",
+        "{\"line\": [\"a\", \"b\"], \"url_map\": {\"a\": \"http://a\"}}   | jsyntrax(line('a', 'b'), ['a': 'http://a'])",
+        "{\"line\": [\"a\"], \"url_map\": {}}                             | jsyntrax(line('a'), [:])",
+    })
+    void sameUnitsAsScriptTest(String json, String spec) throws IOException, JsonSpecException {
+        assertSameAsScript(json, spec);
+    }
+
+    @Test
+    void testSpecTest() throws IOException, URISyntaxException, JsonSpecException {
+        for (String[] names : new String[][] {{"test_spec.json", "test_spec.txt"}, {"jsyntrax.json", "jsyntrax.spec"}}) {
+            String json = Files.readString(
+                    Paths.get(JsonSpecParserTest.class.getResource("/org/atpfivt/jsyntrax/" + names[0]).toURI()));
+            String spec = Files.readString(
+                    Paths.get(JsonSpecParserTest.class.getResource("/org/atpfivt/jsyntrax/" + names[1]).toURI()));
+            assertSameAsScript(json, spec);
+        }
+    }
+
+    @Test
+    void urlMapTest() throws IOException, JsonSpecException {
+        JsonSpecParser spec = JsonSpecParser.parse(new StringReader(
+                "{\"title\": \"t\", \"optx\": [\"a\"], \"url_map\": {\"a\": \"http://a\"}}"));
+
+        assertThat(spec.getTitle()).isEqualTo("t");
+        assertThat(spec.getNode().getUrlMap()).isEqualTo(Map.of("a", "http://a"));
+        assertThat(JsonSpecParser.parse(new StringReader("{\"line\": []}")).getTitle()).isNull();
+    }
+
+    @Test
+    void byteOrderMarkTest() throws IOException, JsonSpecException {
+        assertThat(JsonSpecParser.parse(new StringReader("\uFEFF{\"line\": [\"a\"]}")).getNode())
+                .isEqualTo(JsonSpecParser.parse(new StringReader("{\"line\": [\"a\"]}")).getNode());
+        // only a mark at the start is skipped, columns are counted without it
+        assertThatThrownBy(() -> JsonSpecParser.parse(new StringReader("\uFEFF\uFEFF{}")))
+                .isInstanceOf(JsonSpecException.class)
+                .hasMessageStartingWith("Line 1, column 1: ");
+    }
+
+    @Test
+    void sharedUnitsTest() throws IOException, JsonSpecException {
+        Unit line = JsonSpecParser.parse(new StringReader("{\"line\": [\"a\", {\"opt\": [\"b\", \"a\"]}]}"))
+                .getNode().getTrack();
+
+        assertThat(line.getUnits().get(0)).isSameAs(line.getUnits().get(1).getUnits().get(0).getUnits().get(1));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', quoteCharacter = '`', value = {
+        "                                   | 1 | 1  | expected '{' of a track",
+        "[\"a\"]                            | 1 | 1  | expected '{' of a track",
+        "{}                                 | 1 | 1  | track has none of the keys",
+        "{\"line\": [\"a\",]}               | 1 | 15 | expected a string, null or a track",
+        "{\"line\": [\"a\" \"b\"]}          | 1 | 15 | expected ',' or ']'",
+        "{\"line\": [1]}                    | 1 | 11 | expected a string, null or a track",
+        "{\"line\": [true]}                 | 1 | 11 | unexpected true",
+        "{\"line\": [], \"opt\": []}        | 1 | 21 | track is both line and opt",
+        "{\"line\": [], \"foo\": 1}         | 1 | 21 | unexpected key 'foo'",
+        "{\"line\": [{\"line\": [], \"title\": \"t\"}]} | 1 | 33 | unexpected key 'title'",
+        "{\"indentstack\": [\"a\"]}         | 1 | 1  | indentstack must have an indent",
+        "{\"indent\": 1.5, \"indentstack\": []} | 1 | 12 | expected an integer",
+        "{\"indent\": 1, \"line\": []}      | 1 | 1  | line has no indent",
+        "{\"loop\": [\"a\"]}                | 1 | 1  | loop must have two units",
+        "{\"line\": [\"a\"]} {}             | 1 | 17 | expected the end of the spec",
+        "{\"line\": [\"a\u0001\"]}          | 1 | 11 | control character in a string",
+        "{\"line\": [\"\\x\"]}              | 1 | 11 | invalid escape in a string",
+        "`{\"line\":\n  [\"a\"`               | 2 | 7  | expected ',' or ']'",
+        "{\"line\": [\"a\"], \"url_map\": {\"a\": 1}} | 1 | 34 | expected a string",
+    })
+    void errorTest(String json, int line, int column, String message) {
+        String spec = json == null ? "" : json;
+
+        assertThatThrownBy(() -> JsonSpecParser.parse(new StringReader(spec)))
+                .isInstanceOf(JsonSpecException.class)
+                .hasMessageStartingWith("Line " + line + ", column " + column + ": " + message)
+                .satisfies(e -> assertThat(((JsonSpecException) e).getLine()).isEqualTo(line));
+    }
+
+    @Test
+    void deepNestingTest() throws IOException, JsonSpecException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < DEPTH; ++i) {
+            sb.append("{\"opt\": [");
+        }
+        sb.append("\"x\"");
+        for (int i = 0; i < DEPTH; ++i) {
+            sb.append("]}");
+        }
+
+        Unit unit = JsonSpecParser.parse(new StringReader(sb.toString())).getNode().getTrack();
+        assertThat(unit.getDepth()).isEqualTo(2 * DEPTH);
+    }
+
+    @Test
+    void streamedSpecTest() throws IOException, JsonSpecException {
+        // the spec is made as it is read, it is never held in memory as a whole
+        Reader reader = new Reader() {
+            private final String head = "{\"choice\": [\"n\"";
+            private final String item = ", \"n\"";
+            private long pos;
+
+            @Override
+            public int read(char[] buf, int off, int len) {
+                int n = 0;
+                while (n < len) {
+                    int c = charAt(pos);
+                    if (c < 0) {
+                        break;
+                    }
+                    buf[off + n++] = (char) c;
+                    ++pos;
+                }
+                return n == 0 ? -1 : n;
+            }
+
+            private int charAt(long i) {
+                if (i < head.length()) {
+                    return head.charAt((int) i);
+                }
+                long body = i - head.length();
+                long repeated = (long) NODES * item.length();
+                if (body < repeated) {
+                    return item.charAt((int) (body % item.length()));
+                }
+                return body - repeated < 2 ? "]}".charAt((int) (body - repeated)) : -1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        Unit choice = JsonSpecParser.parse(reader).getNode().getTrack();
+        assertThat(choice.getUnits()).hasSize(NODES + 1);
+        assertThat(choice.getUnits().get(NODES)).isSameAs(choice.getUnits().get(0));
+    }
+
+    @Test
+    void limitsTest() {
+        Limits limits = Limits.NONE.withMaxUnits(3);
+
+        assertThatThrownBy(() -> JsonSpecParser.parse(new StringReader("{\"line\": [\"a\", \"b\", \"c\"]}"), limits))
+                .isInstanceOf(LimitExceededException.class);
+    }
+
+    private static void assertSameAsScript(String json, String spec) throws IOException, JsonSpecException {
+        JsonSpecParser parsed = JsonSpecParser.parse(new StringReader(json));
+        Parser script = new Parser(spec);
+
+        assertThat(parsed.getNode()).isEqualTo(script.getNode());
+        assertThat(parsed.getNode().getUrlMap()).isEqualTo(script.getNode().getUrlMap());
+        assertThat(parsed.getNode().getTrack().toString()).isEqualTo(script.getNode().getTrack().toString());
+        assertThat(parsed.getTitle()).isEqualTo(script.getTitle());
+    }
+}
@@ -0,0 +1,122 @@
+package org.atpfivt.jsyntrax.parser;
+
+import org.atpfivt.jsyntrax.Configuration;
+import org.atpfivt.jsyntrax.groovy_parser.Parser;
+import org.atpfivt.jsyntrax.units.Unit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpecParserTest {
+    private static final int DEPTH = 100_000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "line('a', \"/b\", 1, None, null)",
+        "title('t')\nstack(line('a', opt('b', 'c')), loop(choice('d', '/e'), None))",
+        "line('a')\ntitle(\"second\")",
+        "title('first'); line('a'); title('last')",
+        "toploop(optx('a'), rightstack('b', indentstack(3, 'c', 'c')))",
+        "line()\nopt()",
+        "jsyntrax(line('a'))",
+        "jsyntrax(line('a', 'b'), ['a': 'http://a', b: \"http://b\"])",
+        "jsyntrax(line('a'), [:])",
+        "// comment\nline('a', /* inline\n comment */ 'b') // end",
+        "line('\\'', \"\\\"\", '\\\\', '\\n\\t', '\\u00fc', \"\\$\", 'ü')",
+        "line(line('a'), title('t'))",
+    })
+    void sameUnitsAsScriptTest(String spec) {
+        assertSameAsScript(spec);
+    }
+
+    @Test
+    void testSpecTest() throws IOException, URISyntaxException {
+        for (String name : new String[] {"test_spec.txt", "jsyntrax.spec"}) {
+            String spec = Files.readString(
+                    Paths.get(SpecParserTest.class.getResource("/org/atpfivt/jsyntrax/" + name).toURI()));
+            assertSameAsScript(spec);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "def a = 'x'\nline(a)",
+        "line(\"${1 + 1}\")",
+        "line('''a''')",
+        "line('a' + 'b')",
+        "line('a').toString()",
+        "line('a',)",
+        "line(None)",
+        "loop('a', 'b', 'c')",
+        "indentstack('a', 'b')",
+        "jsyntrax('a')",
+        "jsyntrax(line('a'), ['a': 1])",
+        "line 'a', 'b'",
+        "line(1.5)",
+        "line(010)",
+        "title('t')",
+        "'a'",
+        "",
+        "System.exit(42)",
+        "line('a') /* two\nlines */ line('b')",
+    })
+    void groovyFeaturesAreLeftToScriptTest(String spec) {
+        assertThat(SpecParser.parse(spec)).isNull();
+    }
+
+    @Test
+    void sharedUnitsTest() {
+        Configuration c = SpecParser.parse("line('a', opt('b', 'a'))").getNode();
+        Unit line = c.getTrack();
+
+        assertThat(line.getUnits().get(0)).isSameAs(line.getUnits().get(1).getUnits().get(0).getUnits().get(1));
+    }
+
+    @Test
+    void urlMapTest() {
+        SpecParser spec = SpecParser.parse("title('t')\njsyntrax(optx('a'), ['a': 'http://a'])");
+
+        assertThat(spec.getTitle()).isEqualTo("t");
+        assertThat(spec.getNode().getUrlMap()).isEqualTo(Map.of("a", "http://a"));
+    }
+
+    @Test
+    void deepNestingTest() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < DEPTH; ++i) {
+            sb.append("opt(");
+        }
+        sb.append("'x'");
+        for (int i = 0; i < DEPTH; ++i) {
+            sb.append(')');
+        }
+
+        Unit unit = SpecParser.parse(sb.toString()).getNode().getTrack();
+        int depth = 0;
+        while (!unit.getUnits().isEmpty()) {
+            // every opt holds a line of its units
+            unit = unit.getUnits().get(0).getUnits().get(0);
+            ++depth;
+        }
+        assertThat(depth).isEqualTo(DEPTH);
+    }
+
+    private static void assertSameAsScript(String spec) {
+        SpecParser parsed = SpecParser.parse(spec);
+        Parser script = new Parser(spec);
+
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.getNode()).isEqualTo(script.getNode());
+        assertThat(parsed.getNode().getUrlMap()).isEqualTo(script.getNode().getUrlMap());
+        assertThat(parsed.getNode().getTrack().toString()).isEqualTo(script.getNode().getTrack().toString());
+        assertThat(parsed.getTitle()).isEqualTo(script.getTitle());
+    }
+}
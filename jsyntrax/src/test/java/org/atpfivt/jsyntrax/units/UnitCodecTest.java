@@ -0,0 +1,98 @@
+package org.atpfivt.jsyntrax.units;
+
+import org.atpfivt.jsyntrax.exceptions.LoopNotTwoArgsException;
+import org.atpfivt.jsyntrax.groovy_parser.SyntraxScript;
+import org.atpfivt.jsyntrax.units.nodes.Bullet;
+import org.atpfivt.jsyntrax.units.nodes.Node;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.atpfivt.jsyntrax.units.tracks.loop.Loop;
+import org.atpfivt.jsyntrax.units.tracks.opt.Opt;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UnitCodecTest extends SyntraxScript {
+    // deep enough to overflow the stack of a recursive codec
+    private static final int DEPTH = 20_000;
+
+    @Test
+    void roundTripTest() throws IOException {
+        Unit unit = stack(line("/a", opt("b", null), optx("c")), loop(choice("d", "/e"), null),
+                toploop("f", "g"), rightstack("h"), indentstack(3, "i", "i"), new Line(new Bullet()), "ü");
+
+        Unit read = roundTrip(unit);
+
+        assertThat(read).isEqualTo(unit);
+        assertThat(read.toString()).isEqualTo(unit.toString());
+        assertThat(read).isNotSameAs(unit);
+    }
+
+    @Test
+    void sharedUnitsStaySharedTest() throws IOException {
+        Line shared = line("a", "b");
+        Unit read = roundTrip(stack(shared, opt(shared)));
+
+        assertThat(read.getUnits().get(1).getUnits().get(0).getUnits().get(0)).isSameAs(read.getUnits().get(0));
+    }
+
+    @Test
+    void deepRoundTripTest() throws IOException, LoopNotTwoArgsException {
+        // the tree is made by the constructors, a script would take longer than the codec
+        Unit unit = new Line(new Node("x"));
+        Node y = new Node("y");
+        for (int i = 0; i < DEPTH; ++i) {
+            unit = i % 2 == 0 ? new Opt(List.of(new Line(unit))) : new Loop(List.of(unit, y));
+        }
+
+        assertThat(roundTrip(unit)).isEqualTo(unit);
+    }
+
+    @Test
+    void foreignUnitTest() {
+        Unit foreign = new Line(List.of()) { };
+
+        assertThatThrownBy(() -> roundTrip(line(foreign))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void invalidDataTest() throws IOException {
+        byte[] data = write(loop("a", "b"));
+
+        assertThatThrownBy(() -> read(Arrays.copyOf(data, data.length - 1))).isInstanceOf(IOException.class);
+        // the loop refers to itself
+        byte[] selfReference = data.clone();
+        selfReference[selfReference.length - 1] = 3;
+        assertThatThrownBy(() -> read(selfReference)).hasMessage("Invalid unit index: 3");
+        // the loop has one unit
+        byte[] oneUnit = Arrays.copyOf(data, data.length - 4);
+        oneUnit[oneUnit.length - 5] = 1;
+        assertThatThrownBy(() -> read(oneUnit)).hasMessage("Loop must have two units, got 1");
+        byte[] badTag = data.clone();
+        badTag[4] = 100;
+        assertThatThrownBy(() -> read(badTag)).hasMessage("Invalid unit tag: 100");
+        assertThat(read(data)).isInstanceOf(Loop.class);
+    }
+
+    private static byte[] write(Unit unit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UnitCodec.write(new DataOutputStream(bytes), unit);
+        return bytes.toByteArray();
+    }
+
+    private static Unit read(byte[] data) throws IOException {
+        return UnitCodec.read(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static Unit roundTrip(Unit unit) throws IOException {
+        return read(write(unit));
+    }
+}
@@ -0,0 +1,80 @@
+package org.atpfivt.jsyntrax.units;
+
+import org.atpfivt.jsyntrax.groovy_parser.SyntraxScript;
+import org.atpfivt.jsyntrax.units.nodes.Node;
+import org.atpfivt.jsyntrax.units.nodes.NoneNode;
+import org.atpfivt.jsyntrax.units.tracks.Line;
+import org.atpfivt.jsyntrax.units.tracks.loop.Loop;
+import org.atpfivt.jsyntrax.units.tracks.stack.Indentstack;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UnitPoolTest extends SyntraxScript {
+    private static final int DEPTH = 100_000;
+
+    @Test
+    void scriptSharesEqualUnitsTest() {
+        Line first = line("a", opt("b", "a"));
+        Line second = line("a", opt("b", "a"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getUnits().get(0)).isSameAs(first.getUnits().get(1).getUnits().get(0).getUnits().get(1));
+    }
+
+    @Test
+    void structuralEqualityTest() {
+        Unit built = new Line(List.of(new Node("a"), new Indentstack(2, List.of(new Node("b")))));
+
+        assertThat(built).isEqualTo(line("a", indentstack(2, "b")));
+        assertThat(built.hashCode()).isEqualTo(line("a", indentstack(2, "b")).hashCode());
+        assertThat(built).isNotEqualTo(line("a", indentstack(3, "b")));
+        assertThat(built).isNotEqualTo(line("a", stack("b")));
+        assertThat(new Node("")).isNotEqualTo(new NoneNode());
+    }
+
+    @Test
+    void derivedTracksAreKeptTest() {
+        Loop loop = loop("a", "b");
+        Unit node = loop.getUnits().get(0);
+
+        assertThat(loop.getForwardPart()).isSameAs(loop.getForwardPart());
+        assertThat(loop.getForwardPart()).isSameAs(node.getTrack());
+        assertThat(node.getConfiguration()).isSameAs(node.getConfiguration());
+        assertThat(loop.getConfiguration()).isSameAs(loop.getConfiguration());
+        assertThat(loop.isBackwardNull()).isFalse();
+    }
+
+    @Test
+    void unitsAreImmutableTest() {
+        Line line = line("a");
+        assertThatThrownBy(() -> line.getUnits().add(new Node("b")))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void deepEqualityTest() {
+        Unit scripted = line("x");
+        Unit built = new Line(List.of(new Node("x")));
+        for (int i = 0; i < DEPTH; ++i) {
+            scripted = line(scripted, "y");
+            built = new Line(List.of(built, new Node("y")));
+        }
+        assertThat(built.hashCode()).isEqualTo(scripted.hashCode());
+        assertThat(built.equals(scripted)).isTrue();
+        assertThat(built.equals(line(scripted, "y"))).isFalse();
+    }
+
+    @Test
+    void poolTest() {
+        UnitPool pool = new UnitPool();
+        Node a = pool.node("a");
+
+        assertThat(pool.node("a")).isSameAs(a);
+        assertThat(pool.intern(new Line(List.of(new Node("a"))))).isSameAs(pool.intern(new Line(List.of(a))));
+        assertThat(pool.size()).isEqualTo(2);
+    }
+}
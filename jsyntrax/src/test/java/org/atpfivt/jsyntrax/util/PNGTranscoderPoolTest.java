@@ -0,0 +1,60 @@
+package org.atpfivt.jsyntrax.util;
+
+import org.apache.batik.transcoder.TranscoderException;
+import org.atpfivt.jsyntrax.Main;
+import org.atpfivt.jsyntrax.styles.StyleConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PNGTranscoderPoolTest {
+    private static String svg(String spec) throws IOException {
+        return Main.generateSVG(null, new StyleConfig(1, false), spec);
+    }
+
+    @Test
+    void batchKeepsOrderTest() throws IOException, TranscoderException {
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < 12; ++i) {
+            documents.add(svg("line('n" + i + "', opt(" + i + "))"));
+        }
+        try (PNGTranscoderPool pool = new PNGTranscoderPool(3).warmUp()) {
+            List<byte[]> images = pool.transcodeAll(documents);
+
+            assertThat(images).hasSize(documents.size());
+            for (int i = 0; i < documents.size(); ++i) {
+                assertThat(images.get(i)).isEqualTo(SVGTranscoder.svg2Png(documents.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void canvasTest() throws IOException, TranscoderException {
+        String spec = "stack(line('a', loop('b', ',')), 'c')";
+        try (PNGTranscoderPool pool = new PNGTranscoderPool(1)) {
+            assertThat(pool.transcode(Main.generateCanvas(null, new StyleConfig(1, false), spec)))
+                    .isEqualTo(pool.transcode(svg(spec)));
+        }
+    }
+
+    @Test
+    void failureTest() throws IOException {
+        try (PNGTranscoderPool pool = new PNGTranscoderPool(2)) {
+            assertThatThrownBy(() -> pool.transcodeAll(List.of(svg("line('a')"), "<svg")))
+                    .isInstanceOf(TranscoderException.class);
+        }
+        assertThatThrownBy(() -> new PNGTranscoderPool(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void expectedSizeTest() throws IOException {
+        assertThat(SVGTranscoder.expectedPngSize(svg("line('a')"))).isGreaterThanOrEqualTo(1024);
+        assertThat(SVGTranscoder.expectedPngSize("<svg width=\"4000\" height=\"1000\">")).isEqualTo(1_000_000);
+        assertThat(SVGTranscoder.expectedPngSize("not svg")).isEqualTo(1024);
+    }
+}